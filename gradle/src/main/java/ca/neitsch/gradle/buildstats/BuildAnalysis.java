@@ -0,0 +1,187 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.common.collect.Lists;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * How well a build used its workers, and which tasks held it up.
+ *
+ * The critical path is the chain of dependencies with the most task time
+ * along it: however many workers there are, the tasks can't finish sooner
+ * than that. When it's nearly as long as the tasks took, splitting the
+ * tasks on it is what would make the build faster; when it's much shorter,
+ * the build is waiting for workers instead.
+ *
+ * All times are in seconds.
+ */
+public class BuildAnalysis {
+    /** How many equal intervals the task span is divided into */
+    private static final int INTERVALS = 20;
+    /** How many of the longest tasks on the critical path to report */
+    private static final int CRITICAL_TASKS = 10;
+
+    private int _workers;
+    private double _taskSpan;
+    private double _serialWork;
+    private double _criticalPathLength;
+    private double _idleWorkerTime;
+    private double[] _intervalParallelism;
+    private List<Step> _criticalTasks;
+
+    /** A task on the critical path */
+    public static class Step {
+        private final String _path;
+        private final double _duration;
+
+        Step(String path, double duration) {
+            _path = path;
+            _duration = duration;
+        }
+
+        public String getPath() {
+            return _path;
+        }
+
+        public double getDuration() {
+            return _duration;
+        }
+    }
+
+    /**
+     * Analyze the tasks that finished, relying on the graph listing every
+     * task after the tasks it depends on, as Gradle's execution order does.
+     *
+     * @param workers how many tasks could have run at once
+     */
+    static BuildAnalysis analyze(TaskTimes times, int workers) {
+        int n = times.size();
+        long spanStart = Long.MAX_VALUE;
+        long spanEnd = Long.MIN_VALUE;
+        long serial = 0;
+
+        // The most task time on any chain of dependencies ending with task
+        // i, and the dependency before i on that chain, or -1
+        long[] pathLength = new long[n];
+        int[] previous = new int[n];
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            long duration = 0;
+            if (times.hasFinished(i)) {
+                duration = times.getEndNanos(i) - times.getStartNanos(i);
+                serial += duration;
+                spanStart = Math.min(spanStart, times.getStartNanos(i));
+                spanEnd = Math.max(spanEnd, times.getEndNanos(i));
+            }
+
+            previous[i] = -1;
+            for (int d: times.getDependencies(i)) {
+                if (d < i && (previous[i] < 0 || pathLength[d] > pathLength[previous[i]]))
+                    previous[i] = d;
+            }
+            pathLength[i] = duration + (previous[i] < 0 ? 0 : pathLength[previous[i]]);
+            if (last < 0 || pathLength[i] > pathLength[last])
+                last = i;
+        }
+
+        BuildAnalysis a = new BuildAnalysis();
+        a._workers = workers;
+        a._serialWork = serial / 1e9;
+        a._intervalParallelism = new double[0];
+        a._criticalTasks = Lists.newArrayList();
+        if (spanEnd <= spanStart)
+            return a;
+
+        long span = spanEnd - spanStart;
+        a._taskSpan = span / 1e9;
+        a._criticalPathLength = pathLength[last] / 1e9;
+        a._idleWorkerTime = Math.max(0, workers * span - serial) / 1e9;
+        a._intervalParallelism = intervalParallelism(times, spanStart, span);
+
+        List<Integer> path = Lists.newArrayList();
+        for (int i = last; i >= 0; i = previous[i]) {
+            if (times.hasFinished(i))
+                path.add(i);
+        }
+        a._criticalTasks = longestInOrder(times, Lists.reverse(path));
+        return a;
+    }
+
+    /**
+     * The average number of tasks running during each interval: task time
+     * in the interval, divided by its length.
+     */
+    private static double[] intervalParallelism(TaskTimes times, long spanStart, long span) {
+        double length = (double)span / INTERVALS;
+        double[] busy = new double[INTERVALS];
+        for (int i = 0; i < times.size(); i++) {
+            if (!times.hasFinished(i))
+                continue;
+            double start = times.getStartNanos(i) - spanStart;
+            double end = times.getEndNanos(i) - spanStart;
+            int first = Math.min(INTERVALS - 1, (int)(start / length));
+            int last = Math.min(INTERVALS - 1, (int)(end / length));
+            for (int b = first; b <= last; b++)
+                busy[b] += Math.min(end, (b + 1) * length) - Math.max(start, b * length);
+        }
+        for (int b = 0; b < INTERVALS; b++)
+            busy[b] /= length;
+        return busy;
+    }
+
+    /** The longest of the tasks on the path, in the order they ran */
+    private static List<Step> longestInOrder(TaskTimes times, List<Integer> path) {
+        List<Integer> longest = Lists.newArrayList(path);
+        longest.sort(Comparator.comparingLong(
+                (Integer i) -> times.getEndNanos(i) - times.getStartNanos(i)).reversed());
+        longest = longest.subList(0, Math.min(CRITICAL_TASKS, longest.size()));
+
+        List<Step> ret = Lists.newArrayList();
+        for (int i: path) {
+            if (longest.contains(i)) {
+                ret.add(new Step(times.getTask(i).getPath(),
+                        (times.getEndNanos(i) - times.getStartNanos(i)) / 1e9));
+            }
+        }
+        return ret;
+    }
+
+    public int getWorkers() {
+        return _workers;
+    }
+
+    /** From the first task starting to the last one finishing */
+    public double getTaskSpan() {
+        return _taskSpan;
+    }
+
+    /** The total time of all tasks, as if run one after another */
+    public double getSerialWork() {
+        return _serialWork;
+    }
+
+    public double getCriticalPathLength() {
+        return _criticalPathLength;
+    }
+
+    /** The average number of tasks running at once */
+    public double getParallelism() {
+        return _taskSpan == 0 ? 0 : _serialWork / _taskSpan;
+    }
+
+    /** Worker time, over the task span, not spent running a task */
+    public double getIdleWorkerTime() {
+        return _idleWorkerTime;
+    }
+
+    /** The average number of tasks running in each of equal intervals */
+    public double[] getIntervalParallelism() {
+        return _intervalParallelism;
+    }
+
+    /** The longest tasks on the critical path, in the order they ran */
+    public List<Step> getCriticalTasks() {
+        return _criticalTasks;
+    }
+}
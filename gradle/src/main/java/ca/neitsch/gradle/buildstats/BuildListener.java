@@ -1,11 +1,6 @@
 package ca.neitsch.gradle.buildstats;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 import org.gradle.BuildResult;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionGraph;
@@ -15,26 +10,37 @@ import org.gradle.api.initialization.Settings;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.tasks.TaskState;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Instant;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 public class BuildListener
         implements org.gradle.BuildListener, TaskExecutionGraphListener, TaskExecutionListener
 {
-    private ZonedDateTime _startTime;
-    private List<Task> _allTasks;
-    private ConcurrentMap<Task, JsonObject> _taskInfo = Maps.newConcurrentMap();
-    private ConcurrentMap<Task, ZonedDateTime> _taskStart = Maps.newConcurrentMap();
+    /**
+     * Set this system property to true, e.g. with -D on the command line,
+     * to write a trace of each build to ~/.gradle/build_traces
+     */
+    public static final String TRACE_PROPERTY = "ca.neitsch.gradle.buildstats.trace";
+
+    // To the nanosecond, so that builds started together get traces of
+    // their own
+    private static final DateTimeFormatter TRACE_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss.SSSSSSSSS")
+                    .withZone(ZoneId.systemDefault());
+
+    // Every other time is measured with System.nanoTime() from
+    // _startNanos, and only turned into an Instant once the build is over.
+    private Instant _startTime;
+    private long _startNanos;
+    private volatile TaskTimes _taskTimes;
 
     public BuildListener() {
-        _startTime = ZonedDateTime.now();
+        _startTime = Instant.now();
+        _startNanos = System.nanoTime();
     }
 
     @Override
@@ -56,68 +62,71 @@ public class BuildListener
 
     @Override
     public void buildFinished(BuildResult buildResult) {
-        JsonObject out = new JsonObject();
-        out.addProperty("startTime", _startTime.toString());
-        out.addProperty("duration", durationBetween(_startTime, ZonedDateTime.now()));
-        out.addProperty("rootDir", buildResult.getGradle().getRootProject().getProjectDir().toString());
-        out.addProperty("projectName", buildResult.getGradle().getRootProject().getName());
-        Throwable buildFailure = buildResult.getFailure();
-        if (buildFailure == null) {
-            out.addProperty("buildFailure", (String)null);
-        } else {
-            out.addProperty("buildFailure", chainedFailure(buildResult.getFailure()));
+        BuildStats stats = new BuildStats();
+        stats.setStartTime(_startTime);
+        stats.setEndTime(instantAt(System.nanoTime() - _startNanos));
+        stats.setRootProjectDir(buildResult.getGradle().getRootProject().getProjectDir().toString());
+        stats.setRootProjectName(buildResult.getGradle().getRootProject().getName());
+        stats.setFailure(chainedFailure(buildResult.getFailure()));
+        if (Boolean.getBoolean(TRACE_PROPERTY)) {
+            stats.setTraceFile(Paths.get(System.getProperty("user.home"),
+                    ".gradle", "build_traces",
+                    stats.getRootProjectName() + "-" + TRACE_TIME_FORMAT.format(_startTime) + ".json"));
         }
 
-        JsonArray taskArray = new JsonArray();
-        _taskInfo.entrySet().stream().forEach(e -> taskArray.add(e.getValue()));
-        out.add("tasks", taskArray);
-
-        Gson g = new GsonBuilder()
-                .setPrettyPrinting()
-                .serializeNulls()
-                .create();
-
-        String outFilename = System.getProperty("user.home")
-                + "/" + ".gradle/build_history.json";
-
-        try (BufferedWriter writer = new BufferedWriter(
-                new FileWriter(outFilename, true))) {
-            writer.write(g.toJson(out) + "\n");
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        List<TaskExecution> tasks = Lists.newArrayList();
+        TaskTimes times = _taskTimes;
+        if (times != null) {
+            for (int i = 0; i < times.size(); i++) {
+                if (times.hasFinished(i))
+                    tasks.add(taskExecution(times, i));
+            }
+        }
+        tasks.sort(Comparator.comparing(TaskExecution::getStartTime));
+        stats.setTasks(tasks);
+        if (!tasks.isEmpty()) {
+            stats.setAnalysis(BuildAnalysis.analyze(times,
+                    buildResult.getGradle().getStartParameter().getMaxWorkerCount()));
         }
+
+        HistoryWriter.getInstance().submit(stats);
     }
 
     @Override
     public void graphPopulated(TaskExecutionGraph graph) {
         // The graph is empty when buildFinished() runs; perhaps the tasks
         // are removed from the graph as they are completed?
-        _allTasks = Lists.newArrayList(graph.getAllTasks());
+        List<Task> allTasks = Lists.newArrayList(graph.getAllTasks());
+        _taskTimes = new TaskTimes(allTasks, graph::getDependencies, _startNanos);
         graph.addTaskExecutionListener(this);
     }
 
     @Override
     public void beforeExecute(Task task) {
-        _taskStart.put(task, ZonedDateTime.now());
+        _taskTimes.started(task);
     }
 
     @Override
     public void afterExecute(Task task, TaskState state) {
-        ZonedDateTime startTime = _taskStart.get(task);
-        JsonObject o = new JsonObject();
-        o.addProperty("path", task.getPath());
-        o.addProperty("startTime", startTime.toString());
-        o.addProperty("duration", durationBetween(startTime, ZonedDateTime.now()));
-        o.addProperty("executed", task.getState().getExecuted());
-        o.addProperty("didWork", task.getState().getDidWork());
-        if (task.getState().getFailure() != null) {
-            o.addProperty("failure", chainedFailure(task.getState().getFailure()));
-        }
-        _taskInfo.put(task, o);
+        _taskTimes.finished(task);
+    }
+
+    private TaskExecution taskExecution(TaskTimes times, int i) {
+        Task task = times.getTask(i);
+        TaskExecution t = new TaskExecution();
+        t.setPath(task.getPath());
+        t.setStartTime(instantAt(times.getStartNanos(i)));
+        t.setEndTime(instantAt(times.getEndNanos(i)));
+        t.setExecuted(task.getState().getExecuted());
+        t.setDidWork(task.getState().getDidWork());
+        t.setFailure(chainedFailure(task.getState().getFailure()));
+        t.setThreadId(times.getThreadId(i));
+        t.setThreadName(times.getThreadName(i));
+        return t;
     }
 
-    static private double durationBetween(ZonedDateTime a, ZonedDateTime b) {
-        return ChronoUnit.NANOS.between(a, b) / 1e9;
+    private Instant instantAt(long nanosSinceStart) {
+        return _startTime.plusNanos(nanosSinceStart);
     }
 
     static private String chainedFailure(Throwable t) {
@@ -1,11 +1,14 @@
 package ca.neitsch.gradle.buildstats;
 
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.IsoFields;
 import java.time.temporal.JulianFields;
+import java.util.ArrayList;
+import java.util.List;
 
 public class BuildStats {
     private Instant _startTime;
@@ -14,6 +17,10 @@ public class BuildStats {
     private String _rootProjectDir;
     private String _rootProjectName;
     private Instant _endTime;
+    private String _failure;
+    private List<TaskExecution> _tasks = new ArrayList<>();
+    private BuildAnalysis _analysis;
+    private Path _traceFile;
 
     public Instant getStartTime() {
         return _startTime;
@@ -66,4 +73,39 @@ public class BuildStats {
     public long getDuration() {
         return _startTime.until(_endTime, ChronoUnit.MILLIS);
     }
+
+    /** The build failure and its causes, one per line, or null */
+    public String getFailure() {
+        return _failure;
+    }
+
+    public void setFailure(String failure) {
+        this._failure = failure;
+    }
+
+    public List<TaskExecution> getTasks() {
+        return _tasks;
+    }
+
+    public void setTasks(List<TaskExecution> tasks) {
+        this._tasks = tasks;
+    }
+
+    /** Null if no tasks ran */
+    public BuildAnalysis getAnalysis() {
+        return _analysis;
+    }
+
+    public void setAnalysis(BuildAnalysis analysis) {
+        this._analysis = analysis;
+    }
+
+    /** Where to write a trace of the tasks, or null for none */
+    public Path getTraceFile() {
+        return _traceFile;
+    }
+
+    public void setTraceFile(Path traceFile) {
+        this._traceFile = traceFile;
+    }
 }
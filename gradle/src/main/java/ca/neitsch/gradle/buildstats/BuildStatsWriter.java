@@ -0,0 +1,106 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Writes build records as newline-delimited JSON: each build is one compact
+ * line, streamed field by field with no tree in between, so the history can
+ * be read back a record at a time.
+ */
+public class BuildStatsWriter {
+    private BuildStatsWriter() {
+    }
+
+    /** Write stats to out as one line, ending with a newline */
+    public static void writeLine(BuildStats stats, Writer out)
+            throws IOException
+    {
+        JsonWriter w = new JsonWriter(out);
+        w.setSerializeNulls(true);
+        write(stats, w);
+        w.flush();
+        out.write('\n');
+    }
+
+    public static void write(BuildStats stats, JsonWriter w)
+            throws IOException
+    {
+        w.beginObject();
+        w.name("startTime").value(zoned(stats.getStartTime()));
+        w.name("duration").value(
+                stats.getStartTime().until(stats.getEndTime(), ChronoUnit.NANOS) / 1e9);
+        w.name("rootDir").value(stats.getRootProjectDir());
+        w.name("projectName").value(stats.getRootProjectName());
+        w.name("buildFailure").value(stats.getFailure());
+        if (stats.getTraceFile() != null)
+            w.name("traceFile").value(stats.getTraceFile().toString());
+
+        w.name("tasks").beginArray();
+        for (TaskExecution t: stats.getTasks())
+            write(t, w);
+        w.endArray();
+
+        if (stats.getAnalysis() != null) {
+            w.name("analysis");
+            write(stats.getAnalysis(), w);
+        }
+
+        w.endObject();
+    }
+
+    public static void write(BuildAnalysis analysis, JsonWriter w)
+            throws IOException
+    {
+        w.beginObject();
+        w.name("workers").value(analysis.getWorkers());
+        w.name("taskSpan").value(analysis.getTaskSpan());
+        w.name("serialWork").value(analysis.getSerialWork());
+        w.name("criticalPath").value(analysis.getCriticalPathLength());
+        w.name("parallelism").value(analysis.getParallelism());
+        w.name("idleWorkerTime").value(analysis.getIdleWorkerTime());
+
+        w.name("intervalParallelism").beginArray();
+        for (double p: analysis.getIntervalParallelism())
+            w.value(p);
+        w.endArray();
+
+        w.name("criticalTasks").beginArray();
+        for (BuildAnalysis.Step step: analysis.getCriticalTasks()) {
+            w.beginObject();
+            w.name("path").value(step.getPath());
+            w.name("duration").value(step.getDuration());
+            w.endObject();
+        }
+        w.endArray();
+
+        w.endObject();
+    }
+
+    public static void write(TaskExecution task, JsonWriter w)
+            throws IOException
+    {
+        w.beginObject();
+        w.name("path").value(task.getPath());
+        w.name("startTime").value(zoned(task.getStartTime()));
+        w.name("duration").value(task.getDuration());
+        w.name("executed").value(task.getExecuted());
+        w.name("didWork").value(task.getDidWork());
+        if (task.getFailure() != null)
+            w.name("failure").value(task.getFailure());
+        w.endObject();
+    }
+
+    /**
+     * A time as the history has always had it, a ZonedDateTime in the local
+     * zone, so that old and new records read the same way.
+     */
+    private static String zoned(Instant time) {
+        return time.atZone(ZoneId.systemDefault()).toString();
+    }
+}
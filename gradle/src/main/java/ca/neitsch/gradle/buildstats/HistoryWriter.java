@@ -0,0 +1,250 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.common.collect.Lists;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Appends build records to the history file from a background thread, so
+ * that finishing a build never waits on the disk.
+ *
+ * Records wait in a bounded queue, and whatever has piled up is written
+ * together, with one channel write per batch. If the queue is full, the
+ * record goes to a spill file instead, which is moved into the history
+ * ahead of the next batch, to keep the history in order. One writer is
+ * shared by every build in a daemon, and a shutdown hook writes out what is
+ * left when the daemon stops.
+ *
+ * Every daemon spills to the same file, so it is locked with a FileLock
+ * while it is written or moved, and emptied rather than deleted, so that a
+ * daemon waiting for the lock never writes to a file that is gone.
+ *
+ * Builds that asked for a trace get it written here too, after their
+ * record. A record that has to be spilled from the build thread loses its
+ * trace instead, since writing one can take a while.
+ */
+public class HistoryWriter {
+    private static final Logger LOG = Logging.getLogger(HistoryWriter.class);
+
+    private static final int QUEUE_SIZE = 64;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    // Queued by close() to wake the writer. Interrupting the writer instead
+    // would close the file channel under any write in progress.
+    private static final BuildStats CLOSE = new BuildStats();
+
+    private static HistoryWriter _instance;
+
+    private final Path _history;
+    private final Path _spill;
+    private final BlockingQueue<BuildStats> _queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final Thread _thread;
+    private volatile boolean _closed;
+
+    // Held while writing or moving the spill file. A FileLock only keeps
+    // other processes out, and throws if this one already holds it.
+    private final Object _spillLock = new Object();
+
+    /** The writer for ~/.gradle/build_history.json, started on first use */
+    public static synchronized HistoryWriter getInstance() {
+        if (_instance == null) {
+            Path dir = Paths.get(System.getProperty("user.home"), ".gradle");
+            _instance = new HistoryWriter(dir.resolve("build_history.json"),
+                    dir.resolve("build_history.spill.json"));
+            _instance.start();
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(_instance::close, "build history writer shutdown"));
+        }
+        return _instance;
+    }
+
+    HistoryWriter(Path history, Path spill) {
+        _history = history;
+        _spill = spill;
+        _thread = new Thread(this::run, "build history writer");
+        _thread.setDaemon(true);
+    }
+
+    void start() {
+        _thread.start();
+    }
+
+    /** Queue stats to be written; returns without waiting for the disk */
+    public void submit(BuildStats stats) {
+        // If the writer stopped after the check but before the offer, it
+        // won't see the record, so take it back if it's still there.
+        if (_closed || !_queue.offer(stats) || (_closed && _queue.remove(stats))) {
+            if (stats.getTraceFile() != null) {
+                LOG.warn("Build history writer is behind; not writing " + stats.getTraceFile());
+                stats.setTraceFile(null);
+            }
+            spill(Lists.newArrayList(stats));
+        }
+    }
+
+    /** Write out everything queued, and stop the writer thread */
+    public void close() {
+        _closed = true;
+        // If the queue is full, the writer isn't waiting, and will see
+        // _closed once it has written the batch.
+        _queue.offer(CLOSE);
+        try {
+            _thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Whatever the writer didn't get to in time
+        List<BuildStats> rest = Lists.newArrayList();
+        _queue.drainTo(rest);
+        rest.remove(CLOSE);
+        if (!rest.isEmpty()) {
+            spill(rest);
+            writeTraces(rest);
+        }
+    }
+
+    private void run() {
+        List<BuildStats> batch = Lists.newArrayList();
+        while (!_closed) {
+            try {
+                BuildStats first = _queue.poll(1, TimeUnit.MINUTES);
+                if (first == null)
+                    continue;
+                batch.add(first);
+            } catch (InterruptedException e) {
+                break;
+            }
+            _queue.drainTo(batch);
+            batch.remove(CLOSE);
+            if (!batch.isEmpty())
+                write(batch);
+            batch.clear();
+        }
+        _queue.drainTo(batch);
+        batch.remove(CLOSE);
+        if (!batch.isEmpty())
+            write(batch);
+    }
+
+    /**
+     * Append the batch to the history, after anything spilled, or spill it
+     * if the history can't be written.
+     */
+    private void write(List<BuildStats> batch) {
+        synchronized (_spillLock) {
+            try {
+                ByteBuffer records = serialize(batch);
+                if (Files.exists(_spill)) {
+                    appendAfterSpill(records);
+                } else {
+                    append(_history, records);
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not write build history to " + _history, e);
+                spill(batch);
+            }
+        }
+        writeTraces(batch);
+    }
+
+    private static void writeTraces(List<BuildStats> records) {
+        for (BuildStats stats: records) {
+            Path file = stats.getTraceFile();
+            if (file == null)
+                continue;
+            try {
+                Files.createDirectories(file.getParent());
+                // Never over another build's trace
+                try (Writer out = Files.newBufferedWriter(file, UTF_8, CREATE_NEW, WRITE)) {
+                    TraceWriter.write(stats, out);
+                }
+            } catch (IOException e) {
+                LOG.warn("Could not write build trace to " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Append the spill file and then records to the history, in one write,
+     * and empty the spill file.
+     */
+    private void appendAfterSpill(ByteBuffer records)
+            throws IOException
+    {
+        try (FileChannel spill = FileChannel.open(_spill, CREATE, READ, WRITE)) {
+            // Released when the channel is closed
+            spill.lock();
+            ByteBuffer spilled = ByteBuffer.allocate(Math.toIntExact(spill.size()));
+            while (spilled.hasRemaining() && spill.read(spilled) >= 0)
+                ;
+            spilled.flip();
+            append(_history, spilled, records);
+            spill.truncate(0);
+        }
+    }
+
+    /**
+     * Append records to the spill file, on the calling thread. Only used
+     * when the queue is full, the writer has stopped, or the history
+     * couldn't be written.
+     */
+    private void spill(List<BuildStats> records) {
+        synchronized (_spillLock) {
+            try (FileChannel channel = FileChannel.open(_spill, CREATE, WRITE, APPEND)) {
+                channel.lock();
+                writeFully(channel, serialize(records));
+            } catch (IOException e) {
+                LOG.warn("Could not write build history to " + _spill, e);
+            }
+        }
+    }
+
+    private static void append(Path file, ByteBuffer... buffers)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, CREATE, WRITE, APPEND)) {
+            writeFully(channel, buffers);
+        }
+    }
+
+    private static ByteBuffer serialize(List<BuildStats> records)
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (Writer out = new OutputStreamWriter(bytes, UTF_8)) {
+            for (BuildStats stats: records)
+                BuildStatsWriter.writeLine(stats, out);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer... buffers)
+            throws IOException
+    {
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining())
+            channel.write(buffers);
+    }
+}
@@ -1,7 +1,86 @@
 package ca.neitsch.gradle.buildstats;
 
-import java.time.ZonedDateTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 
 public class TaskExecution {
-    public ZonedDateTime start;
+    private String _path;
+    private Instant _startTime;
+    private Instant _endTime;
+    private boolean _executed;
+    private boolean _didWork;
+    private String _failure;
+    private long _threadId;
+    private String _threadName;
+
+    public String getPath() {
+        return _path;
+    }
+
+    public void setPath(String path) {
+        this._path = path;
+    }
+
+    public Instant getStartTime() {
+        return _startTime;
+    }
+
+    public void setStartTime(Instant startTime) {
+        this._startTime = startTime;
+    }
+
+    public Instant getEndTime() {
+        return _endTime;
+    }
+
+    public void setEndTime(Instant endTime) {
+        this._endTime = endTime;
+    }
+
+    public boolean getExecuted() {
+        return _executed;
+    }
+
+    public void setExecuted(boolean executed) {
+        this._executed = executed;
+    }
+
+    public boolean getDidWork() {
+        return _didWork;
+    }
+
+    public void setDidWork(boolean didWork) {
+        this._didWork = didWork;
+    }
+
+    /** The failure and its causes, one per line, or null */
+    public String getFailure() {
+        return _failure;
+    }
+
+    public void setFailure(String failure) {
+        this._failure = failure;
+    }
+
+    /** The worker thread the task ran on */
+    public long getThreadId() {
+        return _threadId;
+    }
+
+    public void setThreadId(long threadId) {
+        this._threadId = threadId;
+    }
+
+    public String getThreadName() {
+        return _threadName;
+    }
+
+    public void setThreadName(String threadName) {
+        this._threadName = threadName;
+    }
+
+    /** In seconds */
+    public double getDuration() {
+        return _startTime.until(_endTime, ChronoUnit.NANOS) / 1e9;
+    }
 }
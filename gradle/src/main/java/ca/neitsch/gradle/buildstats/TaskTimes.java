@@ -0,0 +1,130 @@
+package ca.neitsch.gradle.buildstats;
+
+import org.gradle.api.Task;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * When each task in the graph started and finished, and on which thread, in
+ * arrays indexed by the task's position in the graph, along with the
+ * positions of the tasks each one depends on.
+ *
+ * The task executor calls in from many workers at once, so recording an
+ * event is only a lookup in a map that never changes after construction
+ * and a store into the task's own slot: nothing is allocated, locked or
+ * formatted until the build is over.
+ */
+class TaskTimes {
+    private final List<Task> _tasks;
+    private final Map<Task, Integer> _index;
+    private final int[][] _dependencies;
+    private final long _originNanos;
+
+    // In nanoseconds since _originNanos, or 0 until the event happens
+    private final AtomicLongArray _start;
+    private final AtomicLongArray _end;
+    private final AtomicLongArray _threadId;
+    // The thread's own name, so storing it allocates nothing
+    private final AtomicReferenceArray<String> _threadName;
+
+    /**
+     * @param dependencies the tasks in the graph that a task depends on
+     * @param originNanos the System.nanoTime() that times are measured from
+     */
+    TaskTimes(List<Task> tasks, Function<Task, ? extends Collection<Task>> dependencies,
+              long originNanos)
+    {
+        _tasks = tasks;
+        _index = new IdentityHashMap<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++)
+            _index.put(tasks.get(i), i);
+        _dependencies = new int[tasks.size()][];
+        for (int i = 0; i < tasks.size(); i++) {
+            _dependencies[i] = dependencies.apply(tasks.get(i)).stream()
+                    .map(_index::get)
+                    .filter(d -> d != null)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        _originNanos = originNanos;
+        _start = new AtomicLongArray(tasks.size());
+        _end = new AtomicLongArray(tasks.size());
+        _threadId = new AtomicLongArray(tasks.size());
+        _threadName = new AtomicReferenceArray<>(tasks.size());
+    }
+
+    /** Tasks not in the graph, if there ever are any, are ignored */
+    void started(Task task) {
+        Integer i = _index.get(task);
+        if (i != null) {
+            Thread thread = Thread.currentThread();
+            _threadId.lazySet(i, thread.getId());
+            _threadName.lazySet(i, thread.getName());
+            _start.lazySet(i, now());
+        }
+    }
+
+    void finished(Task task) {
+        Integer i = _index.get(task);
+        if (i != null)
+            _end.lazySet(i, now());
+    }
+
+    /**
+     * Record that a task ran from start to end, in nanoseconds since the
+     * origin, on the current thread, as if started() and finished() had been
+     * called then. An end of 0 means the task never finished.
+     */
+    void record(Task task, long startNanos, long endNanos) {
+        int i = _index.get(task);
+        Thread thread = Thread.currentThread();
+        _threadId.set(i, thread.getId());
+        _threadName.set(i, thread.getName());
+        _start.set(i, startNanos);
+        _end.set(i, endNanos);
+    }
+
+    private long now() {
+        // Never 0, which means the event hasn't happened
+        return Math.max(1, System.nanoTime() - _originNanos);
+    }
+
+    int size() {
+        return _tasks.size();
+    }
+
+    Task getTask(int i) {
+        return _tasks.get(i);
+    }
+
+    boolean hasFinished(int i) {
+        return _start.get(i) != 0 && _end.get(i) != 0;
+    }
+
+    long getStartNanos(int i) {
+        return _start.get(i);
+    }
+
+    long getEndNanos(int i) {
+        return _end.get(i);
+    }
+
+    long getThreadId(int i) {
+        return _threadId.get(i);
+    }
+
+    String getThreadName(int i) {
+        return _threadName.get(i);
+    }
+
+    /** The positions of the tasks that task i depends on */
+    int[] getDependencies(int i) {
+        return _dependencies[i];
+    }
+}
@@ -0,0 +1,80 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Writes the tasks of a build in the Chrome trace event format, which
+ * chrome://tracing and Perfetto can open: one row per worker thread, with
+ * each task as a span on the thread that ran it, so overlap and the gaps
+ * between tasks show up at a glance.
+ *
+ * Events are streamed one at a time, so a trace is never held in memory.
+ */
+public class TraceWriter {
+    private static final int PID = 1;
+
+    private TraceWriter() {
+    }
+
+    public static void write(BuildStats stats, Writer out)
+            throws IOException
+    {
+        JsonWriter w = new JsonWriter(out);
+        w.beginObject();
+        w.name("displayTimeUnit").value("ms");
+        w.name("traceEvents").beginArray();
+
+        writeMetadata(w, "process_name", 0, stats.getRootProjectName());
+
+        Set<Long> threadsNamed = new HashSet<>();
+        for (TaskExecution t: stats.getTasks()) {
+            if (threadsNamed.add(t.getThreadId()))
+                writeMetadata(w, "thread_name", t.getThreadId(), t.getThreadName());
+
+            w.beginObject();
+            w.name("name").value(t.getPath());
+            w.name("cat").value("task");
+            w.name("ph").value("X");
+            w.name("ts").value(micros(stats, t));
+            w.name("dur").value(t.getStartTime().until(t.getEndTime(), ChronoUnit.NANOS) / 1e3);
+            w.name("pid").value(PID);
+            w.name("tid").value(t.getThreadId());
+            w.name("args").beginObject();
+            w.name("executed").value(t.getExecuted());
+            w.name("didWork").value(t.getDidWork());
+            if (t.getFailure() != null)
+                w.name("failure").value(t.getFailure());
+            w.endObject();
+            w.endObject();
+        }
+
+        w.endArray();
+        w.endObject();
+        w.flush();
+    }
+
+    /** When the task started, in microseconds since the build started */
+    private static double micros(BuildStats stats, TaskExecution t) {
+        return stats.getStartTime().until(t.getStartTime(), ChronoUnit.NANOS) / 1e3;
+    }
+
+    private static void writeMetadata(JsonWriter w, String name, long tid, String value)
+            throws IOException
+    {
+        w.beginObject();
+        w.name("name").value(name);
+        w.name("ph").value("M");
+        w.name("pid").value(PID);
+        w.name("tid").value(tid);
+        w.name("args").beginObject();
+        w.name("name").value(value);
+        w.endObject();
+        w.endObject();
+    }
+}
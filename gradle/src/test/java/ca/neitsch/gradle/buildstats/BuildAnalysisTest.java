@@ -0,0 +1,124 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.api.Task;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class BuildAnalysisTest {
+    private static final long MS = 1_000_000;
+    private static final double DELTA = 1e-9;
+
+    /** A task that only knows its path */
+    private static Task task(String path) {
+        return (Task)Proxy.newProxyInstance(Task.class.getClassLoader(),
+                new Class<?>[] {Task.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getPath":
+                    case "toString":
+                        return path;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static List<String> paths(List<BuildAnalysis.Step> steps) {
+        return steps.stream().map(BuildAnalysis.Step::getPath).collect(Collectors.toList());
+    }
+
+    private final Task _a = task(":a");
+    private final Task _b = task(":b");
+    private final Task _c = task(":c");
+    private final Task _d = task(":d");
+    private final Task _e = task(":e");
+    private final Task _f = task(":f");
+
+    /**
+     * a, then b and c side by side, then d, which needs both; b takes
+     * longer than c, so it is on the critical path. e needs d, and f needs
+     * e.
+     */
+    private TaskTimes diamond() {
+        Map<Task, Set<Task>> deps = ImmutableMap.<Task, Set<Task>>builder()
+                .put(_a, ImmutableSet.of())
+                .put(_b, ImmutableSet.of(_a))
+                .put(_c, ImmutableSet.of(_a))
+                .put(_d, ImmutableSet.of(_b, _c))
+                .put(_e, ImmutableSet.of(_d))
+                .put(_f, ImmutableSet.of(_e))
+                .build();
+        TaskTimes times = new TaskTimes(
+                ImmutableList.of(_a, _b, _c, _d, _e, _f), deps::get, 0);
+        times.record(_a, 1, 1 + 100 * MS);
+        times.record(_b, 1 + 100 * MS, 1 + 400 * MS);
+        times.record(_c, 1 + 100 * MS, 1 + 200 * MS);
+        times.record(_d, 1 + 400 * MS, 1 + 500 * MS);
+        return times;
+    }
+
+    @Test
+    public void testDiamond() {
+        BuildAnalysis a = BuildAnalysis.analyze(diamond(), 2);
+
+        assertEquals(2, a.getWorkers());
+        assertEquals(0.5, a.getTaskSpan(), DELTA);
+        assertEquals(0.6, a.getSerialWork(), DELTA);
+        assertEquals(0.5, a.getCriticalPathLength(), DELTA);
+        assertEquals(1.2, a.getParallelism(), DELTA);
+        assertEquals(2 * 0.5 - 0.6, a.getIdleWorkerTime(), DELTA);
+
+        assertEquals(ImmutableList.of(":a", ":b", ":d"), paths(a.getCriticalTasks()));
+        assertEquals(0.3, a.getCriticalTasks().get(1).getDuration(), DELTA);
+    }
+
+    @Test
+    public void testIntervalParallelism() {
+        double[] p = BuildAnalysis.analyze(diamond(), 2).getIntervalParallelism();
+
+        // 20 intervals of 25 ms: only a for the first 100 ms, then b and c
+        // until c is done at 200 ms, then b, then d
+        assertEquals(20, p.length);
+        for (int i = 0; i < 20; i++)
+            assertEquals("interval " + i, i >= 4 && i < 8 ? 2 : 1, p[i], DELTA);
+    }
+
+    @Test
+    public void testUnfinishedTask() {
+        TaskTimes times = diamond();
+        // e was still running when the build stopped, and f never started
+        times.record(_e, 1 + 500 * MS, 0);
+        BuildAnalysis a = BuildAnalysis.analyze(times, 2);
+
+        assertEquals(0.5, a.getTaskSpan(), DELTA);
+        assertEquals(0.6, a.getSerialWork(), DELTA);
+        assertEquals(0.5, a.getCriticalPathLength(), DELTA);
+        assertEquals(ImmutableList.of(":a", ":b", ":d"), paths(a.getCriticalTasks()));
+    }
+
+    @Test
+    public void testNothingFinished() {
+        TaskTimes times = new TaskTimes(ImmutableList.of(_a),
+                t -> ImmutableSet.of(), 0);
+        BuildAnalysis a = BuildAnalysis.analyze(times, 4);
+
+        assertEquals(0, a.getTaskSpan(), DELTA);
+        assertEquals(0, a.getCriticalPathLength(), DELTA);
+        assertEquals(0, a.getParallelism(), DELTA);
+        assertEquals(0, a.getIntervalParallelism().length);
+        assertTrue(a.getCriticalTasks().isEmpty());
+    }
+}
@@ -0,0 +1,81 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.common.collect.Lists;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.*;
+
+public class BuildStatsWriterTest {
+    private static final Instant START = Instant.parse("2017-03-04T05:06:07.123456789Z");
+
+    private static BuildStats build() {
+        BuildStats stats = new BuildStats();
+        stats.setStartTime(START);
+        stats.setEndTime(START.plusMillis(2500));
+        stats.setRootProjectDir("/src/project");
+        stats.setRootProjectName("project");
+
+        TaskExecution compile = new TaskExecution();
+        compile.setPath(":compileJava");
+        compile.setStartTime(START.plusMillis(100));
+        compile.setEndTime(START.plusMillis(1600));
+        compile.setExecuted(true);
+        compile.setDidWork(true);
+        compile.setFailure("Compilation failed\n\tat \"Foo.java\"");
+        stats.setTasks(Lists.newArrayList(compile));
+        return stats;
+    }
+
+    private static String line(BuildStats stats) throws IOException {
+        StringWriter out = new StringWriter();
+        BuildStatsWriter.writeLine(stats, out);
+        return out.toString();
+    }
+
+    @Test
+    public void testOneLinePerRecord() throws IOException {
+        String line = line(build());
+        assertTrue(line, line.endsWith("\n"));
+        assertEquals(line, line.length() - 1, line.indexOf('\n'));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        JsonObject o = new Gson().fromJson(line(build()), JsonObject.class);
+
+        assertEquals(START, ZonedDateTime.parse(o.get("startTime").getAsString()).toInstant());
+        assertEquals(2.5, o.get("duration").getAsDouble(), 1e-9);
+        assertEquals("/src/project", o.get("rootDir").getAsString());
+        assertEquals("project", o.get("projectName").getAsString());
+        assertTrue(o.get("buildFailure").isJsonNull());
+        assertFalse(o.has("traceFile"));
+        assertFalse(o.has("analysis"));
+
+        JsonArray tasks = o.getAsJsonArray("tasks");
+        assertEquals(1, tasks.size());
+        JsonObject t = tasks.get(0).getAsJsonObject();
+        assertEquals(":compileJava", t.get("path").getAsString());
+        assertEquals(START.plusMillis(100),
+                ZonedDateTime.parse(t.get("startTime").getAsString()).toInstant());
+        assertEquals(1.5, t.get("duration").getAsDouble(), 1e-9);
+        assertTrue(t.get("executed").getAsBoolean());
+        assertTrue(t.get("didWork").getAsBoolean());
+        assertEquals("Compilation failed\n\tat \"Foo.java\"", t.get("failure").getAsString());
+    }
+
+    @Test
+    public void testTaskWithoutFailure() throws IOException {
+        BuildStats stats = build();
+        stats.getTasks().get(0).setFailure(null);
+        JsonObject o = new Gson().fromJson(line(stats), JsonObject.class);
+        assertFalse(o.getAsJsonArray("tasks").get(0).getAsJsonObject().has("failure"));
+    }
+}
@@ -0,0 +1,159 @@
+package ca.neitsch.gradle.buildstats;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class HistoryWriterTest {
+    @Rule
+    public TemporaryFolder _tmp = new TemporaryFolder();
+
+    private Path _history;
+    private Path _spill;
+    private HistoryWriter _writer;
+
+    @Before
+    public void setUp() {
+        _history = _tmp.getRoot().toPath().resolve("history.json");
+        _spill = _tmp.getRoot().toPath().resolve("spill.json");
+        _writer = new HistoryWriter(_history, _spill);
+    }
+
+    private static BuildStats build(String name) {
+        BuildStats stats = new BuildStats();
+        stats.setStartTime(Instant.now());
+        stats.setEndTime(stats.getStartTime());
+        stats.setRootProjectName(name);
+        return stats;
+    }
+
+    private static void submit(HistoryWriter writer, int from, int to) {
+        for (int i = from; i < to; i++)
+            writer.submit(build("p" + i));
+    }
+
+    /** The project names in a file of records, in order */
+    private static List<String> names(Path file) throws IOException {
+        if (!Files.exists(file))
+            return Collections.emptyList();
+        List<String> names = new ArrayList<>();
+        for (String line: Files.readAllLines(file, UTF_8)) {
+            names.add(new Gson().fromJson(line, JsonObject.class)
+                    .get("projectName").getAsString());
+        }
+        return names;
+    }
+
+    private static List<String> names(int from, int to) {
+        List<String> names = new ArrayList<>();
+        for (int i = from; i < to; i++)
+            names.add("p" + i);
+        return names;
+    }
+
+    @Test
+    public void testWritesEveryBuild() throws IOException {
+        _writer.start();
+        submit(_writer, 0, 200);
+        _writer.close();
+
+        // Any spilled after the last batch are still in the spill file
+        List<String> written = new ArrayList<>(names(_history));
+        written.addAll(names(_spill));
+        Collections.sort(written);
+        List<String> expected = names(0, 200);
+        Collections.sort(expected);
+        assertEquals(expected, written);
+    }
+
+    @Test
+    public void testSpillWhenQueueIsFull() throws IOException {
+        // With the writer not yet running, the queue holds 64 and the rest
+        // are spilled
+        submit(_writer, 0, 70);
+        assertEquals(names(64, 70), names(_spill));
+        assertEquals(Collections.emptyList(), names(_history));
+
+        // Spilled records go into the history first
+        _writer.start();
+        _writer.close();
+        List<String> expected = names(64, 70);
+        expected.addAll(names(0, 64));
+        assertEquals(expected, names(_history));
+        assertEquals(Collections.emptyList(), names(_spill));
+    }
+
+    @Test
+    public void testEarlierSpillComesFirst() throws IOException {
+        StringWriter spilled = new StringWriter();
+        BuildStatsWriter.writeLine(build("old"), spilled);
+        Files.write(_spill, spilled.toString().getBytes(UTF_8));
+
+        _writer.start();
+        submit(_writer, 0, 1);
+        _writer.close();
+
+        List<String> expected = new ArrayList<>();
+        expected.add("old");
+        expected.add("p0");
+        assertEquals(expected, names(_history));
+        assertEquals(0, Files.size(_spill));
+    }
+
+    @Test
+    public void testCloseSpillsWhatWasNotWritten() throws IOException {
+        // The writer never ran, so close() has to save the queue itself
+        submit(_writer, 0, 3);
+        _writer.close();
+        assertEquals(names(0, 3), names(_spill));
+    }
+
+    @Test
+    public void testWritesTrace() throws IOException {
+        Path trace = _tmp.getRoot().toPath().resolve("traces").resolve("p0.json");
+        BuildStats stats = build("p0");
+        stats.setTraceFile(trace);
+
+        _writer.start();
+        _writer.submit(stats);
+        _writer.close();
+        assertTrue(Files.exists(trace));
+    }
+
+    @Test
+    public void testSpilledBuildHasNoTrace() throws IOException {
+        submit(_writer, 0, 64);
+        Path trace = _tmp.getRoot().toPath().resolve("p64.json");
+        BuildStats stats = build("p64");
+        stats.setTraceFile(trace);
+        _writer.submit(stats);
+
+        assertFalse(Files.exists(trace));
+        String line = Files.readAllLines(_spill, UTF_8).get(0);
+        assertFalse(line, new Gson().fromJson(line, JsonObject.class).has("traceFile"));
+    }
+
+    @Test
+    public void testSubmitAfterCloseSpills() throws IOException {
+        _writer.start();
+        _writer.close();
+        submit(_writer, 0, 1);
+        assertEquals(names(0, 1), names(_spill));
+        assertEquals(Collections.emptyList(), names(_history));
+    }
+}
@@ -3,14 +3,24 @@ import org.gradle.api.tasks.testing.logging.TestExceptionFormat
 plugins {
     id("java")
     id("org.jetbrains.intellij") version "1.4.0"
+    id("me.champeau.jmh") version "0.6.6"
 }
 
 repositories {
     mavenCentral()
 }
 
+// The command-line reflower runs outside the IDE, so it needs its own copy of
+// the libraries the IDE would otherwise provide.
+val cli: Configuration by configurations.creating
+
 dependencies {
     testImplementation("commons-io:commons-io:2.11.0")
+
+    cli("com.google.guava:guava:31.0.1-jre")
+
+    // Provided by the IDE at runtime, but benchmarks run outside it
+    jmh("com.google.guava:guava:31.0.1-jre")
 }
 
 intellij {
@@ -21,6 +31,13 @@ intellij {
     updateSinceUntilBuild.set(false)
 }
 
+jmh {
+    jmhVersion.set("1.35")
+    // Report allocation rates alongside timings, to catch GC regressions
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
 tasks {
     // Somewhat older java supported by sdk
     withType<JavaCompile> {
@@ -28,6 +45,32 @@ tasks {
         targetCompatibility = "11"
     }
 
+    // e.g., ./gradlew reflowCli --args="--check path/to/repo"
+    register<JavaExec>("reflowCli") {
+        description = "Reflows comments in source files, without the IDE"
+        classpath = sourceSets.main.get().output + cli
+        mainClass.set("ca.neitsch.intellij.reflow.cli.ReflowMain")
+    }
+
+    // e.g., ./gradlew sortCli --args="-V -u -o sorted.txt huge.txt"
+    register<JavaExec>("sortCli") {
+        description = "Sorts a file of any size, without the IDE"
+        classpath = sourceSets.main.get().output + cli
+        mainClass.set("ca.neitsch.intellij.reflow.cli.SortMain")
+    }
+
+    // A self-contained jar for pre-commit hooks: java -jar reflow-cli.jar
+    register<Jar>("cliJar") {
+        description = "Builds a runnable jar of the command-line reflower"
+        archiveFileName.set("reflow-cli.jar")
+        manifest {
+            attributes("Main-Class" to "ca.neitsch.intellij.reflow.cli.ReflowMain")
+        }
+        from(sourceSets.main.get().output)
+        from(cli.map { zipTree(it) })
+        duplicatesStrategy = DuplicatesStrategy.EXCLUDE
+    }
+
     test {
         testLogging {
             exceptionFormat = TestExceptionFormat.FULL
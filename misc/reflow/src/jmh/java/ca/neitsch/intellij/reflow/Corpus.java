@@ -0,0 +1,67 @@
+package ca.neitsch.intellij.reflow;
+
+import java.util.Random;
+
+/**
+ * Generated comment blocks that look like the real thing, for benchmarks.
+ */
+public class Corpus {
+    private static final String[] WORDS = (
+            "lorem ipsum dolor sit amet consectetuer adipiscing elit aenean "
+            + "commodo ligula eget massa cum sociis natoque penatibus et "
+            + "magnis dis parturient montes nascetur ridiculus mus donec quam "
+            + "felis ultricies nec pellentesque eu pretium quis sem nulla "
+            + "consequat enim pede justo fringilla vel aliquet vulputate "
+            + "https://example.com/some/path getFirstLineStartPos() 80 2017")
+            .split(" ");
+
+    public enum Style {
+        /** A C comment, ‘/*’ then ‘ * ’ lines */
+        C,
+        /** ‘#’ line comments */
+        HASH,
+        /** One long Markdown bullet inside a C comment */
+        MARKDOWN,
+    }
+
+    /**
+     * Return the lines, joined with newlines, of a comment block of about the
+     * given number of characters. The same arguments always give the same
+     * text.
+     */
+    public static String generate(Style style, int size) {
+        Random r = new Random(size);
+        StringBuilder sb = new StringBuilder(size + 200);
+        boolean first = true;
+        while (sb.length() < size) {
+            if (!first)
+                sb.append('\n');
+            sb.append(linePrefix(style, first));
+            first = false;
+
+            // Ragged lines, some of them too long
+            int width = 40 + r.nextInt(70);
+            int start = sb.length();
+            do {
+                if (sb.length() != start)
+                    sb.append(' ');
+                sb.append(WORDS[r.nextInt(WORDS.length)]);
+            } while (sb.length() - start < width);
+        }
+        if (style == Style.C || style == Style.MARKDOWN)
+            sb.append(" */");
+        return sb.toString();
+    }
+
+    private static String linePrefix(Style style, boolean first) {
+        switch (style) {
+            case C:
+                return first ? "    /* " : "     * ";
+            case HASH:
+                return "    # ";
+            case MARKDOWN:
+                return first ? "     *   - " : "     *     ";
+        }
+        throw new AssertionError(style);
+    }
+}
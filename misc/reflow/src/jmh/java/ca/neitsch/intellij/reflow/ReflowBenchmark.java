@@ -0,0 +1,98 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CComment;
+import ca.neitsch.intellij.reflow.blockcomment.Codec;
+import ca.neitsch.intellij.reflow.blockcomment.CommonPrefix;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each stage of reflowing, from 1 KB to 10 MB comment blocks.
+ *
+ * Run with <tt>./gradlew jmh</tt>; the build turns on the GC profiler, so the
+ * results include bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReflowBenchmark {
+    @Param({"C", "HASH", "MARKDOWN"})
+    private Corpus.Style _style;
+
+    @Param({"1024", "65536", "1048576", "10485760"})
+    private int _size;
+
+    private String _text;
+    private List<String> _lines;
+    private List<String> _innerContents;
+    private int _innerWidth;
+    private List<String> _flowedInner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _text = Corpus.generate(_style, _size);
+        _lines = ImmutableList.copyOf(_text.split("\n"));
+
+        CommonPrefix p = new CommonPrefix();
+        p.setBlockToBeDecoded(_lines);
+        _innerContents = ImmutableList.copyOf(p.innerContents());
+        _innerWidth = TextFlow.WIDTH - p.getWrapWidth();
+        _flowedInner = Arrays.asList(
+                new GreedyTextFlow(_innerContents, _innerWidth).getFlowed().split("\n"));
+    }
+
+    @Benchmark
+    public LineSequence lineSequence() {
+        return new LineSequence(
+                new DefaultStringWithSelection(_text, 0, _text.length()));
+    }
+
+    @Benchmark
+    public boolean cCommentDetect() {
+        Codec c = new CComment();
+        c.setBlockToBeDecoded(_lines);
+        return c.detect();
+    }
+
+    @Benchmark
+    public List<String> commonPrefixInnerContents() {
+        Codec c = new CommonPrefix();
+        c.setBlockToBeDecoded(_lines);
+        return c.innerContents();
+    }
+
+    @Benchmark
+    public List<String> commonPrefixApply() {
+        Codec c = new CommonPrefix();
+        c.setBlockToBeDecoded(_lines);
+        return c.apply(_flowedInner);
+    }
+
+    @Benchmark
+    public String greedyFlow() {
+        return new GreedyTextFlow(_innerContents, _innerWidth).getFlowed();
+    }
+
+    @Benchmark
+    public String reflow() {
+        return new TextFlow().reflow(_lines);
+    }
+}
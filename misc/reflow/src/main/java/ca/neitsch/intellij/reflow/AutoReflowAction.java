@@ -0,0 +1,22 @@
+package ca.neitsch.intellij.reflow;
+
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+
+public class AutoReflowAction
+        extends ToggleAction
+{
+    public AutoReflowAction() {
+        super("Reflow As You Type");
+    }
+
+    @Override
+    public boolean isSelected(AnActionEvent event) {
+        return AutoReflowTypedHandler.isEnabled();
+    }
+
+    @Override
+    public void setSelected(AnActionEvent event, boolean state) {
+        AutoReflowTypedHandler.setEnabled(state);
+    }
+}
@@ -0,0 +1,129 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import com.google.common.collect.ImmutableSet;
+import com.intellij.codeInsight.editorActions.TypedHandlerDelegate;
+import com.intellij.ide.util.PropertiesComponent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.Alarm;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * When enabled, rewraps the paragraph being typed in once a line of it grows
+ * past the wrap width.
+ *
+ * Only characters the user types count: undo and redo, reloads, VCS updates
+ * and other actions’ edits never start a rewrap, so an automatic rewrap can
+ * always be undone. To keep typing fast, charTyped() only notes where the
+ * caret was; the rewrapping happens once typing has paused, for all the
+ * documents typed in since, and only looks at the edited paragraph. A
+ * document that has changed any other way since the last keystroke is left
+ * alone.
+ */
+public class AutoReflowTypedHandler
+    extends TypedHandlerDelegate
+{
+    private static final String ENABLED_KEY = "ca.neitsch.intellij.reflow.autoReflow";
+    private static final int DELAY_MS = 300;
+
+    /** File extensions of prose, where all text is rewrapped, not just comments */
+    private static final Set<String> PROSE_EXTENSIONS =
+            ImmutableSet.of("md", "markdown", "txt", "rst", "adoc");
+
+    private static volatile Boolean _enabled;
+
+    private final Alarm _alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD,
+            ApplicationManager.getApplication());
+
+    // Only touched on the event dispatch thread
+    private final Map<Document, Typed> _pending = new HashMap<>();
+
+    /** Where the last character was typed in a document */
+    private static final class Typed {
+        final Editor _editor;
+        final int _offset;
+        final long _stamp;
+
+        Typed(Editor editor) {
+            _editor = editor;
+            _offset = editor.getCaretModel().getOffset();
+            _stamp = editor.getDocument().getModificationStamp();
+        }
+    }
+
+    public static boolean isEnabled() {
+        Boolean enabled = _enabled;
+        if (enabled == null) {
+            enabled = PropertiesComponent.getInstance().getBoolean(ENABLED_KEY, false);
+            _enabled = enabled;
+        }
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        PropertiesComponent.getInstance().setValue(ENABLED_KEY, enabled, false);
+        _enabled = enabled;
+    }
+
+    @Override
+    public Result charTyped(char c, Project project, Editor editor, PsiFile file) {
+        if (!isEnabled() || editor.isViewer())
+            return Result.CONTINUE;
+        Document d = editor.getDocument();
+        if (d.isInBulkUpdate())
+            return Result.CONTINUE;
+
+        _pending.put(d, new Typed(editor));
+        _alarm.cancelAllRequests();
+        _alarm.addRequest(this::flush, DELAY_MS);
+        return Result.CONTINUE;
+    }
+
+    private void flush() {
+        Map<Document, Typed> pending = new HashMap<>(_pending);
+        _pending.clear();
+        pending.forEach(this::rewrap);
+    }
+
+    private void rewrap(Document d, Typed typed) {
+        // Anything since the last keystroke, like an undo, wasn’t typing
+        if (typed._editor.isDisposed() || !d.isWritable()
+                || d.getModificationStamp() != typed._stamp
+                || typed._offset > d.getTextLength())
+            return;
+
+        CodecRegistry codecs = CodecExtensions.getRegistry();
+        TextEdit edit = new IncrementalReflow(
+                new TextFlow(LineBreaker.GREEDY, codecs), codecs)
+                .rewrap(d.getCharsSequence(), typed._offset, isProse(d));
+        if (edit == null)
+            return;
+
+        CommandProcessor.getInstance().executeCommand(typed._editor.getProject(), () -> {
+            WriteAction.run(() ->
+                    d.replaceString(
+                            edit.getStart(),
+                            edit.getEnd(),
+                            edit.getReplacement()));
+        }, "Reflow as you type", d);
+    }
+
+    private static boolean isProse(Document d) {
+        VirtualFile f = FileDocumentManager.getInstance().getFile(d);
+        if (f == null || f.getExtension() == null)
+            return false;
+        return PROSE_EXTENSIONS.contains(f.getExtension().toLowerCase(Locale.ROOT));
+    }
+}
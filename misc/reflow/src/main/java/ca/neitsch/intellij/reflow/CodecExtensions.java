@@ -0,0 +1,33 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import ca.neitsch.intellij.reflow.blockcomment.CodecType;
+import com.intellij.openapi.extensions.ExtensionPointName;
+
+import java.util.List;
+
+/**
+ * The codec types registered with the plugin’s <tt>codec</tt> extension
+ * point, including the built-in ones declared in plugin.xml.
+ */
+public class CodecExtensions {
+    private static final ExtensionPointName<CodecType> EP_NAME =
+            ExtensionPointName.create("ca.neitsch.intellij.reflow.codec");
+
+    private static List<CodecType> _types;
+    private static CodecRegistry _registry;
+
+    /**
+     * The same registry is returned until a plugin adds or removes a codec
+     * type, so that {@link TextFlow}’s cache can tell registries apart by
+     * identity.
+     */
+    public static synchronized CodecRegistry getRegistry() {
+        List<CodecType> types = EP_NAME.getExtensionList();
+        if (_registry == null || !types.equals(_types)) {
+            _types = types;
+            _registry = new CodecRegistry(types);
+        }
+        return _registry;
+    }
+}
@@ -0,0 +1,193 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import ca.neitsch.intellij.reflow.blockcomment.CodecType;
+import ca.neitsch.intellij.reflow.blockcomment.LineComment;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reflows the comments in a whole file, without any help from an IDE.
+ *
+ * Each comment block is split into paragraphs, and by default only the
+ * paragraphs with a line that is too long are reflowed, so that hand-formatted
+ * comments such as tables and code samples are left alone unless they are
+ * already broken.
+ */
+public class CommentReflower {
+    private final TextFlow _flow;
+    private final CodecRegistry _codecs;
+    private final boolean _all;
+
+    /**
+     * @param all Whether to reflow every paragraph, not just the ones with
+     *         overlong lines
+     */
+    public CommentReflower(TextFlow flow, CodecRegistry codecs, boolean all) {
+        _flow = flow;
+        _codecs = codecs;
+        _all = all;
+    }
+
+    /**
+     * Return the edits, in increasing order of position, that reflow the
+     * comments in text.
+     */
+    public List<TextEdit> reflowComments(CharSequence text) {
+        LineSequence ls = new LineSequence(
+                new DefaultStringWithSelection(text, 0, text.length()));
+        List<String> lines = ls.getSelectedLines();
+        List<TextEdit> edits = new ArrayList<>();
+
+        int i = 0;
+        while (i < lines.size()) {
+            String line = lines.get(i);
+            CodecType type = _codecs.classify(Collections.singletonList(line));
+            if (CodecRegistry.isFallback(type)) {
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            if (!type.endsBlock(line, 0)) {
+                String indent = indentOf(line);
+                while (end < lines.size()) {
+                    String next = lines.get(end);
+                    if (!type.acceptsLine(next, end - i))
+                        break;
+                    // Line comments at different depths are different blocks.
+                    if (type instanceof LineComment && !indentOf(next).equals(indent))
+                        break;
+                    end++;
+                    if (type.endsBlock(next, end - 1 - i))
+                        break;
+                }
+            }
+
+            edits.addAll(reflowLines(text, ls, i, end));
+            i = end;
+        }
+        return edits;
+    }
+
+    /**
+     * Return the edits, in increasing order of position, that reflow the
+     * comments already found in text, e.g., by a parser. Comment i is the range
+     * from starts[i] to ends[i], in order.
+     *
+     * Comments that share a line with code are left alone. One-line comments
+     * on consecutive lines, at the same indent, are reflowed together.
+     */
+    public List<TextEdit> reflowComments(CharSequence text, int[] starts, int[] ends) {
+        List<TextEdit> edits = new ArrayList<>();
+        int i = 0;
+        while (i < starts.length) {
+            int lineStart = IncrementalReflow.lineStart(text, starts[i]);
+            if (!isBlank(text, lineStart, starts[i])) {
+                i++;
+                continue;
+            }
+
+            int indent = starts[i] - lineStart;
+            int last = i;
+            while (last + 1 < starts.length
+                    && isOneLine(text, starts[last], ends[last])
+                    && isOneLine(text, starts[last + 1], ends[last + 1])
+                    && isNextLine(text, ends[last], starts[last + 1])
+                    && starts[last + 1]
+                            - IncrementalReflow.lineStart(text, starts[last + 1]) == indent)
+            {
+                last++;
+            }
+
+            if (isBlank(text, ends[last], IncrementalReflow.lineEnd(text, ends[last])))
+                edits.addAll(reflowRange(text, starts[i], ends[last]));
+            i = last + 1;
+        }
+        return edits;
+    }
+
+    private static boolean isOneLine(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == '\n')
+                return false;
+        }
+        return true;
+    }
+
+    /** Whether only whitespace, including exactly one newline, is between */
+    private static boolean isNextLine(CharSequence text, int end, int nextStart) {
+        return isBlank(text, end, nextStart)
+                && IncrementalReflow.lineStart(text, nextStart)
+                        == IncrementalReflow.lineEnd(text, end) + 1;
+    }
+
+    private static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!WordScanner.isWhitespace(text.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the edits that reflow the lines of text overlapping the range
+     * from start to end, which is known to be a comment.
+     */
+    public List<TextEdit> reflowRange(CharSequence text, int start, int end) {
+        LineSequence ls = new LineSequence(
+                new DefaultStringWithSelection(text, start, end));
+        return reflowLines(text, ls, 0, ls.getLineCount());
+    }
+
+    private List<TextEdit> reflowLines(CharSequence text, LineSequence ls,
+                                       int from, int to)
+    {
+        List<String> lines = ImmutableList.copyOf(
+                ls.getSelectedLines().subList(from, to));
+        if (lines.isEmpty() || hasCodeAfterComment(lines.get(lines.size() - 1)))
+            return Collections.emptyList();
+
+        List<TextEdit> edits = new ArrayList<>();
+        for (Paragraph p: Paragraph.split(lines)) {
+            if (p.isSeparator() || !(_all || hasLongLine(p.getLines())))
+                continue;
+
+            String out = _flow.reflow(p.getLines());
+            int first = from + p.getFirstLine();
+            int last = first + p.getLines().size() - 1;
+            TextEdit edit = TextEdit.minimal(text,
+                    ls.getLineStartPos(first),
+                    ls.getLineEndPos(last),
+                    // Without the trailing newline, as the range has none
+                    out.substring(0, out.length() - 1));
+            if (edit != null)
+                edits.add(edit);
+        }
+        return edits;
+    }
+
+    private static boolean hasLongLine(List<String> lines) {
+        for (String line: lines) {
+            if (DisplayWidth.columns(line) > TextFlow.WIDTH)
+                return true;
+        }
+        return false;
+    }
+
+    /** Whether the line is like ‘ * foo *&#47; int x;’ */
+    private static boolean hasCodeAfterComment(String line) {
+        int close = line.lastIndexOf("*/");
+        return close != -1 && !line.substring(close + 2).trim().isEmpty();
+    }
+
+    private static String indentOf(String line) {
+        int i = 0;
+        while (i < line.length() && WordScanner.isWhitespace(line.charAt(i)))
+            i++;
+        return line.substring(0, i);
+    }
+}
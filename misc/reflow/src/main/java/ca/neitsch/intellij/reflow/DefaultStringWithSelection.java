@@ -3,11 +3,11 @@ package ca.neitsch.intellij.reflow;
 public class DefaultStringWithSelection
     implements StringWithSelection
 {
-    private String _s;
+    private CharSequence _s;
     private int _startPos;
     private int _endPos;
 
-    public DefaultStringWithSelection(String s, int startPos, int endPos) {
+    public DefaultStringWithSelection(CharSequence s, int startPos, int endPos) {
       _s = s;
       _startPos = startPos;
       _endPos = endPos;
@@ -25,11 +25,17 @@ public class DefaultStringWithSelection
 
     @Override
     public String getSelection() {
-        return _s.substring(getStartPos(), getEndPos());
+        return _s.subSequence(getStartPos(), getEndPos()).toString();
     }
 
     @Override
-    public String getString() {
+    public CharSequence getText() {
         return _s;
     }
+
+    /** Copies the whole text; prefer {@link #getText()}. */
+    @Override
+    public String getString() {
+        return _s.toString();
+    }
 }
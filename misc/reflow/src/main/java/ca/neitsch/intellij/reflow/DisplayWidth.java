@@ -0,0 +1,163 @@
+package ca.neitsch.intellij.reflow;
+
+/**
+ * Measures text in display columns, the way a terminal or a monospaced editor
+ * lays it out: East Asian wide and fullwidth characters and most emoji take
+ * two columns, combining marks and other zero-width characters take none,
+ * and tabs advance to the next multiple of {@link #TAB_WIDTH}.
+ *
+ * Widths of the Basic Multilingual Plane come from a table of two bits per
+ * character, built once; nothing here allocates per character.
+ */
+public final class DisplayWidth {
+    public static final int TAB_WIDTH = 8;
+
+    private static final int NARROW = 0;
+    private static final int ZERO = 1;
+    private static final int WIDE = 2;
+
+    /** East Asian Wide and Fullwidth ranges, and emoji shown wide */
+    private static final int[] WIDE_RANGES = {
+            0x1100, 0x115F, 0x231A, 0x231B, 0x2329, 0x232A, 0x23E9, 0x23EC,
+            0x23F0, 0x23F0, 0x23F3, 0x23F3, 0x25FD, 0x25FE, 0x2614, 0x2615,
+            0x2648, 0x2653, 0x267F, 0x267F, 0x2693, 0x2693, 0x26A1, 0x26A1,
+            0x26AA, 0x26AB, 0x26BD, 0x26BE, 0x26C4, 0x26C5, 0x26CE, 0x26CE,
+            0x26D4, 0x26D4, 0x26EA, 0x26EA, 0x26F2, 0x26F3, 0x26F5, 0x26F5,
+            0x26FA, 0x26FA, 0x26FD, 0x26FD, 0x2705, 0x2705, 0x270A, 0x270B,
+            0x2728, 0x2728, 0x274C, 0x274C, 0x274E, 0x274E, 0x2753, 0x2755,
+            0x2757, 0x2757, 0x2795, 0x2797, 0x27B0, 0x27B0, 0x27BF, 0x27BF,
+            0x2B1B, 0x2B1C, 0x2B50, 0x2B50, 0x2B55, 0x2B55, 0x2E80, 0x303E,
+            0x3041, 0x33FF, 0x3400, 0x4DBF, 0x4E00, 0x9FFF, 0xA000, 0xA4CF,
+            0xA960, 0xA97F, 0xAC00, 0xD7A3, 0xF900, 0xFAFF, 0xFE10, 0xFE19,
+            0xFE30, 0xFE6F, 0xFF00, 0xFF60, 0xFFE0, 0xFFE6,
+            0x16FE0, 0x16FE4, 0x17000, 0x18CFF, 0x1B000, 0x1B2FF,
+            0x1F004, 0x1F004, 0x1F0CF, 0x1F0CF, 0x1F18E, 0x1F18E,
+            0x1F191, 0x1F19A, 0x1F200, 0x1F202, 0x1F210, 0x1F23B,
+            0x1F240, 0x1F248, 0x1F250, 0x1F251, 0x1F260, 0x1F265,
+            0x1F300, 0x1F320, 0x1F32D, 0x1F335, 0x1F337, 0x1F37C,
+            0x1F37E, 0x1F393, 0x1F3A0, 0x1F3CA, 0x1F3CF, 0x1F3D3,
+            0x1F3E0, 0x1F3F0, 0x1F3F4, 0x1F3F4, 0x1F3F8, 0x1F43E,
+            0x1F440, 0x1F440, 0x1F442, 0x1F4FC, 0x1F4FF, 0x1F53D,
+            0x1F54B, 0x1F54E, 0x1F550, 0x1F567, 0x1F57A, 0x1F57A,
+            0x1F595, 0x1F596, 0x1F5A4, 0x1F5A4, 0x1F5FB, 0x1F64F,
+            0x1F680, 0x1F6C5, 0x1F6CC, 0x1F6CC, 0x1F6D0, 0x1F6D2,
+            0x1F6D5, 0x1F6D7, 0x1F6EB, 0x1F6EC, 0x1F6F4, 0x1F6FC,
+            0x1F7E0, 0x1F7EB, 0x1F90C, 0x1F93A, 0x1F93C, 0x1F945,
+            0x1F947, 0x1F9FF, 0x1FA70, 0x1FAFF,
+            0x20000, 0x2FFFD, 0x30000, 0x3FFFD,
+    };
+
+    /** Two bits for each BMP character: NARROW, ZERO or WIDE */
+    private static final long[] BMP = new long[0x10000 / 32];
+
+    static {
+        for (int c = 0; c < 0x10000; c++) {
+            if (isZeroWidth(c))
+                set(c, ZERO);
+        }
+        for (int i = 0; i < WIDE_RANGES.length && WIDE_RANGES[i] < 0x10000; i += 2) {
+            for (int c = WIDE_RANGES[i]; c <= WIDE_RANGES[i + 1]; c++)
+                set(c, WIDE);
+        }
+    }
+
+    private DisplayWidth() {
+    }
+
+    private static void set(int c, int cls) {
+        int shift = (c & 31) << 1;
+        BMP[c >>> 5] = BMP[c >>> 5] & ~(3L << shift) | (long)cls << shift;
+    }
+
+    private static boolean isZeroWidth(int c) {
+        if (c == 0xAD)
+            return false; // A soft hyphen shows where it breaks a line.
+        if (c == 0x200B || (c >= 0x1160 && c <= 0x11FF))
+            return true; // Zero-width space; Hangul medial vowels and finals
+        switch (Character.getType(c)) {
+        case Character.NON_SPACING_MARK:
+        case Character.ENCLOSING_MARK:
+        case Character.FORMAT:
+        case Character.CONTROL:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** The columns taken by one code point; tabs count as 1 here. */
+    public static int of(int codePoint) {
+        if (codePoint < 0x10000) {
+            if (codePoint >= 0x20 && codePoint < 0x7F)
+                return 1;
+            if (codePoint == '\t')
+                return 1;
+            long cls = BMP[codePoint >>> 5] >>> ((codePoint & 31) << 1) & 3;
+            return cls == NARROW ? 1 : cls == WIDE ? 2 : 0;
+        }
+        if (isWideAstral(codePoint))
+            return 2;
+        return isZeroWidth(codePoint) ? 0 : 1;
+    }
+
+    private static boolean isWideAstral(int c) {
+        int lo = 0;
+        int hi = WIDE_RANGES.length / 2;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (WIDE_RANGES[2 * mid + 1] < c) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < WIDE_RANGES.length / 2 && WIDE_RANGES[2 * lo] <= c;
+    }
+
+    /** The columns a line takes up, starting at the left margin */
+    public static int columns(CharSequence s) {
+        return advance(s, 0, s.length(), 0);
+    }
+
+    /** The columns taken by s[start, end), which contains no tabs */
+    public static int width(CharSequence s, int start, int end) {
+        return advance(s, start, end, 0);
+    }
+
+    /** The column reached by laying out s[start, end) from column col */
+    public static int advance(CharSequence s, int start, int end, int col) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x7F) {
+                col++;
+            } else if (c == '\t') {
+                col = (col / TAB_WIDTH + 1) * TAB_WIDTH;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                col += of(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                col += of(c);
+            }
+        }
+        return col;
+    }
+
+    /**
+     * The index of the first character of s that starts at or after the
+     * given column, or s.length() if the line is shorter than that. Marks
+     * stay with the character they combine with.
+     */
+    public static int offsetAt(CharSequence s, int column) {
+        int col = 0;
+        int i = 0;
+        while (i < s.length()) {
+            int cp = Character.codePointAt(s, i);
+            int n = Character.charCount(cp);
+            if (col >= column && (cp == '\t' || of(cp) > 0))
+                return i;
+            col = advance(s, i, i + n, col);
+            i += n;
+        }
+        return s.length();
+    }
+}
@@ -0,0 +1,311 @@
+package ca.neitsch.intellij.reflow;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Sorts UTF-8 files that may not fit in memory, into exactly the order
+ * {@link LineSorter} would. The input is read in runs of a bounded size,
+ * each run is sorted in memory and spilled to a temporary file, and then the
+ * runs are merged.
+ *
+ * As with sorting a selection, lines are split at ‘\n’ only, and every output
+ * line ends with one.
+ */
+public class ExternalSorter {
+    /** The default budget for one in-memory run, in characters */
+    public static final long DEFAULT_RUN_CHARS = 32L << 20;
+
+    /** Roughly what each line costs beyond its text, in characters */
+    private static final int LINE_OVERHEAD = 32;
+
+    /** The most runs merged at once; more take several passes */
+    private static final int MAX_FAN_IN = 128;
+
+    /** How often, in lines, merging checks for cancellation */
+    private static final int CHECK_INTERVAL = 4096;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final LineSorter _sorter;
+    private long _runChars = DEFAULT_RUN_CHARS;
+    private Path _tempDir;
+    private Runnable _checkCanceled = () -> {};
+
+    public ExternalSorter(LineSorter sorter) {
+        _sorter = sorter;
+    }
+
+    /** Set the budget for one in-memory run, in characters */
+    public void setRunChars(long runChars) {
+        if (runChars < 1) {
+            throw new IllegalArgumentException("Run size " + runChars);
+        }
+        _runChars = runChars;
+    }
+
+    /** Set where runs are spilled; null means the system default */
+    public void setTempDirectory(Path tempDir) {
+        _tempDir = tempDir;
+    }
+
+    /**
+     * Set a callback that is run between units of work, and which may throw to
+     * abandon the sort.
+     */
+    public void setCancellationCheck(Runnable checkCanceled) {
+        _checkCanceled = checkCanceled;
+    }
+
+    /**
+     * Sort input into output, which may be the same file. The output is
+     * replaced atomically, so it is never left half-written.
+     */
+    public void sort(Path input, Path output) throws IOException {
+        Path dir = output.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "." + output.getFileName(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                sort(input, out);
+            }
+            if (Files.exists(output) && Files.getFileAttributeView(
+                    output, PosixFileAttributeView.class) != null)
+            {
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(output));
+            }
+            try {
+                Files.move(tmp, output, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Sort input into output, which is left open. */
+    public void sort(Path input, WritableByteChannel output) throws IOException {
+        List<Path> temps = new ArrayList<>();
+        try {
+            List<Path> runs = new ArrayList<>();
+            try (LineReader in = new LineReader(
+                    FileChannel.open(input, StandardOpenOption.READ)))
+            {
+                List<String> chunk = new ArrayList<>();
+                long chars = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    chunk.add(line);
+                    chars += line.length() + LINE_OVERHEAD;
+                    if (chars >= _runChars) {
+                        runs.add(writeRun(_sorter.sort(chunk, _checkCanceled), temps));
+                        chunk.clear();
+                        chars = 0;
+                    }
+                }
+
+                String[] last = _sorter.sort(chunk, _checkCanceled);
+                if (runs.isEmpty()) {
+                    // It all fit in memory after all.
+                    write(last, output);
+                    return;
+                }
+                if (last.length > 0) {
+                    runs.add(writeRun(last, temps));
+                }
+            }
+
+            // Runs are grouped in input order, and ties go to the earlier
+            // run, so every pass is stable.
+            while (runs.size() > MAX_FAN_IN) {
+                List<Path> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                    List<Path> group = runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN));
+                    Path run = createRun(temps);
+                    try (FileChannel out = FileChannel.open(run, StandardOpenOption.WRITE)) {
+                        merge(group, out);
+                    }
+                    for (Path p: group) {
+                        Files.delete(p);
+                    }
+                    merged.add(run);
+                }
+                runs = merged;
+            }
+            merge(runs, output);
+        } finally {
+            for (Path p: temps) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    private Path createRun(List<Path> temps) throws IOException {
+        Path run = _tempDir == null
+                ? Files.createTempFile("reflow-sort", ".run")
+                : Files.createTempFile(_tempDir, "reflow-sort", ".run");
+        temps.add(run);
+        return run;
+    }
+
+    private Path writeRun(String[] lines, List<Path> temps) throws IOException {
+        Path run = createRun(temps);
+        try (FileChannel out = FileChannel.open(run, StandardOpenOption.WRITE)) {
+            write(lines, out);
+        }
+        return run;
+    }
+
+    private static void write(String[] lines, WritableByteChannel out) throws IOException {
+        Writer w = newWriter(out);
+        for (String line: lines) {
+            w.write(line);
+            w.write('\n');
+        }
+        w.flush();
+    }
+
+    private void merge(List<Path> runs, WritableByteChannel out) throws IOException {
+        Function<String, Object> key = _sorter.keyFunction();
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(runs.size(), (x, y) -> {
+            int c = _sorter.compareKeys(x._key, y._key);
+            return c != 0 ? c : Integer.compare(x._run, y._run);
+        });
+
+        List<LineReader> readers = new ArrayList<>(runs.size());
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                LineReader r = new LineReader(
+                        FileChannel.open(runs.get(i), StandardOpenOption.READ));
+                readers.add(r);
+                Cursor c = new Cursor(i, r);
+                if (c.advance(key)) {
+                    queue.add(c);
+                }
+            }
+
+            Writer w = newWriter(out);
+            Object lastKey = null;
+            long count = 0;
+            while (!queue.isEmpty()) {
+                Cursor c = queue.poll();
+                if (!(_sorter.isUnique() && lastKey != null
+                        && _sorter.compareKeys(c._key, lastKey) == 0))
+                {
+                    w.write(c._line);
+                    w.write('\n');
+                }
+                lastKey = c._key;
+                if (c.advance(key)) {
+                    queue.add(c);
+                }
+                if (++count % CHECK_INTERVAL == 0) {
+                    _checkCanceled.run();
+                }
+            }
+            w.flush();
+        } finally {
+            for (LineReader r: readers) {
+                r.close();
+            }
+        }
+    }
+
+    /** A writer that, unlike the channel’s own, needn’t be closed */
+    private static Writer newWriter(WritableByteChannel out) {
+        return new BufferedWriter(
+                Channels.newWriter(out, UTF_8.newEncoder(), BUFFER_SIZE),
+                BUFFER_SIZE);
+    }
+
+    /** The next line of one run */
+    private static final class Cursor {
+        final int _run;
+        final LineReader _reader;
+        String _line;
+        Object _key;
+
+        Cursor(int run, LineReader reader) {
+            _run = run;
+            _reader = reader;
+        }
+
+        boolean advance(Function<String, Object> key) throws IOException {
+            _line = _reader.readLine();
+            _key = _line == null ? null : key.apply(_line);
+            return _line != null;
+        }
+    }
+
+    /**
+     * Reads lines split at ‘\n’ only. BufferedReader would also split at
+     * ‘\r’, which sorting a selection doesn’t.
+     */
+    private static final class LineReader implements Closeable {
+        private final Reader _in;
+        private final char[] _buf = new char[BUFFER_SIZE];
+        private int _pos;
+        private int _limit;
+
+        LineReader(ReadableByteChannel in) {
+            _in = Channels.newReader(in, UTF_8.newDecoder(), BUFFER_SIZE);
+        }
+
+        /** Return the next line, without its ‘\n’, or null at the end */
+        String readLine() throws IOException {
+            StringBuilder sb = null;
+            while (true) {
+                if (_pos == _limit) {
+                    int n = _in.read(_buf);
+                    if (n < 0) {
+                        _pos = _limit = 0;
+                        return sb == null ? null : sb.toString();
+                    }
+                    _pos = 0;
+                    _limit = n;
+                }
+
+                int start = _pos;
+                while (_pos < _limit && _buf[_pos] != '\n') {
+                    _pos++;
+                }
+                if (_pos < _limit) {
+                    String line = sb == null
+                            ? new String(_buf, start, _pos - start)
+                            : sb.append(_buf, start, _pos - start).toString();
+                    _pos++;
+                    return line;
+                }
+                if (sb == null) {
+                    sb = new StringBuilder();
+                }
+                sb.append(_buf, start, _pos - start);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            _in.close();
+        }
+    }
+}
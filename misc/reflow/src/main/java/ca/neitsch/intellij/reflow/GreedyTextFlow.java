@@ -1,56 +1,140 @@
 package ca.neitsch.intellij.reflow;
 
-import com.google.common.base.Joiner;
-import com.google.common.collect.Lists;
-
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class GreedyTextFlow {
-    private static final Pattern RE_WS = Pattern.compile("\\s+");
-
-    private String _s;
+    private List<? extends CharSequence> _lines;
     private int _maxLength;
+    // Null to break only at whitespace
+    private Hyphenator _hyphenator;
 
-    private List<String> _out;
-    private StringBuilder _curLine;
+    private StringBuilder _out;
+    // Where in _out the line currently being filled begins, and its width
+    // so far in columns
+    private int _lineStart;
+    private int _lineWidth;
 
     public GreedyTextFlow(String s, int maxLength) {
-        _s = s;
+        this(Collections.singletonList(s), maxLength);
+    }
+
+    public GreedyTextFlow(List<? extends CharSequence> lines, int maxLength) {
+        this(lines, maxLength, null);
+    }
+
+    /**
+     * With a hyphenator, a word that doesn’t fit on the rest of a line is
+     * hyphenated, if it can be, to fill the line, with a
+     * {@link Hyphenator#SOFT_HYPHEN}. Words split that way before are
+     * rejoined first.
+     */
+    public GreedyTextFlow(List<? extends CharSequence> lines, int maxLength,
+                          Hyphenator hyphenator)
+    {
+        // Rejoin the words an earlier hyphenating reflow split, so they
+        // can be split afresh
+        _lines = hyphenator == null ? lines : Hyphenator.rejoin(lines);
         _maxLength = maxLength;
+        _hyphenator = hyphenator;
     }
 
     public String getFlowed() {
-        _out = Lists.newArrayList();
-        _curLine = new StringBuilder();
-        StringBuilder sb = new StringBuilder();
-
-        RE_WS.splitAsStream(_s).forEach((w) -> addWord(w));
+        _out = new StringBuilder(WordScanner.flowedLengthBound(_lines));
+        _lineStart = 0;
+        _lineWidth = 0;
 
-        endLine();
+        WordScanner words = new WordScanner(_lines);
+        while (words.next()) {
+            addWord(words);
+        }
 
-        return Joiner.on("\n").join(_out);
+        return _out.toString();
     }
 
     // Initial greedy implementation
-    private void addWord(String w) {
-        if (_curLine == null) {
-            _curLine = new StringBuilder();
+    private void addWord(WordScanner w) {
+        int spacerWidth = spacerWidth(w);
+        int width = w.width();
+
+        if (_lineWidth + spacerWidth + width > _maxLength) {
+            if (_hyphenator != null) {
+                addHyphenated(w, width);
+                return;
+            }
+            endLine();
+        } else if (spacerWidth != 0) {
+            _out.append(' ');
+            _lineWidth++;
         }
+        w.appendTo(_out);
+        _lineWidth += width;
+    }
 
-        int spacerWidth = _curLine.length() == 0 ? 0 : 1;
+    private void addHyphenated(WordScanner w, int width) {
+        CharSequence line = w.line();
+        int start = w.start();
+        int end = w.end();
+        int[] breaks = _hyphenator.hyphenate(line.subSequence(start, end));
+        int next = 0;
 
-        if (_curLine.length() + spacerWidth + w.length() > _maxLength) {
-            endLine();
+        while (true) {
+            boolean empty = _out.length() == _lineStart;
+            int spacerWidth = spacerWidth(w);
+            if (_lineWidth + spacerWidth + width <= _maxLength)
+                break;
+
+            // The longest prefix that fits along with its hyphen
+            int best = -1;
+            int bestWidth = 0;
+            int prefixWidth = 0;
+            int prev = start;
+            for (int i = next; i < breaks.length; i++) {
+                int b = w.start() + breaks[i];
+                prefixWidth = DisplayWidth.advance(line, prev, b, prefixWidth);
+                prev = b;
+                if (_lineWidth + spacerWidth + prefixWidth + 1 > _maxLength)
+                    break;
+                best = i;
+                bestWidth = prefixWidth;
+            }
+
+            if (best >= 0) {
+                int b = w.start() + breaks[best];
+                if (spacerWidth != 0)
+                    _out.append(' ');
+                _out.append(line, start, b).append(Hyphenator.SOFT_HYPHEN).append('\n');
+                _lineStart = _out.length();
+                _lineWidth = 0;
+                width -= bestWidth;
+                start = b;
+                next = best + 1;
+            } else if (empty) {
+                // Too long even for a line of its own
+                break;
+            } else {
+                endLine();
+            }
         }
-        if (_curLine.length() != 0)
-            _curLine.append(" ");
-        _curLine.append(w);
+
+        if (spacerWidth(w) != 0) {
+            _out.append(' ');
+            _lineWidth++;
+        }
+        _out.append(line, start, end);
+        _lineWidth += width;
+    }
+
+    /** The space needed before the word, if it goes on the current line */
+    private int spacerWidth(WordScanner w) {
+        return _out.length() == _lineStart || !w.spaceBefore() ? 0 : 1;
     }
 
     private void endLine() {
-        if (_curLine.length() != 0)
-            _out.add(_curLine.toString());
-        _curLine = new StringBuilder();
+        if (_out.length() != _lineStart) {
+            _out.append('\n');
+            _lineStart = _out.length();
+            _lineWidth = 0;
+        }
     }
 }
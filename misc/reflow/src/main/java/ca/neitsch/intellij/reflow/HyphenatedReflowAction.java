@@ -0,0 +1,9 @@
+package ca.neitsch.intellij.reflow;
+
+public class HyphenatedReflowAction
+        extends ReflowAction
+{
+    public HyphenatedReflowAction() {
+        super("Reflow Text with Hyphenation", LineBreaker.HYPHENATED);
+    }
+}
@@ -0,0 +1,327 @@
+package ca.neitsch.intellij.reflow;
+
+import com.google.common.io.Resources;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Finds where words may be hyphenated, with Liang’s algorithm, as in TeX.
+ *
+ * The patterns are kept in a trie flattened into a few primitive arrays: the
+ * children of each node are contiguous and sorted, so finding a child is a
+ * binary search, and the digits of every pattern share one byte array. The
+ * default instance is loaded once and shared by every reflow.
+ */
+public class Hyphenator {
+    /** The fewest letters left before and after a hyphen, as in TeX */
+    private static final int LEFT_MIN = 2;
+    private static final int RIGHT_MIN = 3;
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * Ends a line where a word was hyphenated, instead of ‘-’, so that a
+     * later reflow can tell it from a hyphen that belongs in the text. It
+     * shows as a hyphen at the end of a line.
+     */
+    public static final char SOFT_HYPHEN = '\u00AD';
+
+    // Node n’s children are _edgeChar[_childStart[n], _childStart[n + 1]),
+    // leading to the nodes in _edgeNode. The root is node 0.
+    private final int[] _childStart;
+    private final char[] _edgeChar;
+    private final int[] _edgeNode;
+    // Where the digits of the pattern ending at each node start in _values,
+    // or -1. A pattern of n letters has n + 1 digits.
+    private final int[] _valueStart;
+    private final byte[] _values;
+
+    private final Map<String, int[]> _exceptions;
+
+    private static final class Default {
+        static final Hyphenator INSTANCE = load("hyph-en-us.txt");
+    }
+
+    /** US English, from the patterns TeX uses */
+    public static Hyphenator getDefault() {
+        return Default.INSTANCE;
+    }
+
+    private static Hyphenator load(String resource) {
+        try {
+            return parse(Resources.toString(
+                    Resources.getResource(Hyphenator.class, resource), UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read patterns in the format of TeX’s hyphenation files: the patterns
+     * inside <tt>\patterns{}</tt>, and exceptions, with their hyphens, inside
+     * <tt>\hyphenation{}</tt>. ‘%’ starts a comment.
+     */
+    static Hyphenator parse(String text) {
+        Node root = new Node();
+        Map<String, int[]> exceptions = new HashMap<>();
+
+        String section = "";
+        for (String line: text.split("\n")) {
+            int comment = line.indexOf('%');
+            if (comment >= 0)
+                line = line.substring(0, comment);
+            for (String token: line.trim().split("\\s+")) {
+                if (token.startsWith("\\")) {
+                    section = token;
+                    continue;
+                }
+                boolean close = token.endsWith("}");
+                if (close)
+                    token = token.substring(0, token.length() - 1);
+                if (!token.isEmpty()) {
+                    if (section.equals("\\patterns{")) {
+                        addPattern(root, token);
+                    } else if (section.equals("\\hyphenation{")) {
+                        addException(exceptions, token);
+                    }
+                }
+                if (close)
+                    section = "";
+            }
+        }
+        return new Hyphenator(root, exceptions);
+    }
+
+    private static void addPattern(Node root, String pattern) {
+        byte[] values = new byte[pattern.length() + 1];
+        Node n = root;
+        int letters = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c >= '0' && c <= '9') {
+                values[letters] = (byte)(c - '0');
+            } else {
+                n = n._children.computeIfAbsent(c, k -> new Node());
+                letters++;
+            }
+        }
+        byte[] trimmed = new byte[letters + 1];
+        System.arraycopy(values, 0, trimmed, 0, letters + 1);
+        n._values = trimmed;
+    }
+
+    private static void addException(Map<String, int[]> exceptions, String word) {
+        StringBuilder letters = new StringBuilder();
+        List<Integer> breaks = new ArrayList<>();
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) == '-') {
+                breaks.add(letters.length());
+            } else {
+                letters.append(word.charAt(i));
+            }
+        }
+        exceptions.put(letters.toString(),
+                breaks.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private Hyphenator(Node root, Map<String, int[]> exceptions) {
+        // Number the nodes breadth first, so each node’s children get
+        // consecutive edges.
+        List<Node> nodes = new ArrayList<>();
+        nodes.add(root);
+        int values = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            nodes.addAll(n._children.values());
+            if (n._values != null)
+                values += n._values.length;
+        }
+
+        _childStart = new int[nodes.size() + 1];
+        _edgeChar = new char[nodes.size() - 1];
+        _edgeNode = new int[nodes.size() - 1];
+        _valueStart = new int[nodes.size()];
+        _values = new byte[values];
+
+        int edge = 0;
+        int value = 0;
+        int next = 1;
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            _childStart[i] = edge;
+            for (char c: n._children.keySet()) {
+                _edgeChar[edge] = c;
+                _edgeNode[edge] = next++;
+                edge++;
+            }
+            if (n._values == null) {
+                _valueStart[i] = -1;
+            } else {
+                _valueStart[i] = value;
+                System.arraycopy(n._values, 0, _values, value, n._values.length);
+                value += n._values.length;
+            }
+        }
+        _childStart[nodes.size()] = edge;
+
+        _exceptions = exceptions;
+    }
+
+    /**
+     * Return the offsets in word, in increasing order, before which it may be
+     * broken with a hyphen. Punctuation around the word is ignored, and words
+     * with anything but letters inside them, like identifiers or URLs, are
+     * never broken.
+     */
+    public int[] hyphenate(CharSequence word) {
+        int start = 0;
+        int end = word.length();
+        while (start < end && !Character.isLetter(word.charAt(start)))
+            start++;
+        while (end > start && !Character.isLetter(word.charAt(end - 1)))
+            end--;
+        int length = end - start;
+        if (length < LEFT_MIN + RIGHT_MIN)
+            return NONE;
+
+        // The word, lower-cased, between the ‘.’s that mark its ends
+        char[] s = new char[length + 2];
+        s[0] = '.';
+        s[length + 1] = '.';
+        for (int i = 0; i < length; i++) {
+            char c = word.charAt(start + i);
+            if (!Character.isLetter(c))
+                return NONE;
+            s[i + 1] = Character.toLowerCase(c);
+        }
+
+        int[] exception = _exceptions.get(new String(s, 1, length));
+        if (exception != null)
+            return offset(exception, start);
+
+        // points[i] is the highest digit between s[i - 1] and s[i]
+        byte[] points = new byte[s.length + 1];
+        for (int i = 0; i < s.length; i++) {
+            int node = 0;
+            for (int j = i; j < s.length; j++) {
+                node = child(node, s[j]);
+                if (node < 0)
+                    break;
+                int v = _valueStart[node];
+                if (v >= 0) {
+                    for (int k = 0; k <= j - i + 1; k++) {
+                        if (_values[v + k] > points[i + k])
+                            points[i + k] = _values[v + k];
+                    }
+                }
+            }
+        }
+
+        int count = 0;
+        for (int i = LEFT_MIN; i <= length - RIGHT_MIN; i++) {
+            if ((points[i + 1] & 1) != 0)
+                count++;
+        }
+        int[] ret = new int[count];
+        count = 0;
+        for (int i = LEFT_MIN; i <= length - RIGHT_MIN; i++) {
+            if ((points[i + 1] & 1) != 0)
+                ret[count++] = start + i;
+        }
+        return ret;
+    }
+
+    /**
+     * Undo the breaks a hyphenating reflow made, so that the text can be
+     * reflowed afresh: where a line ends with a {@link #SOFT_HYPHEN}, the
+     * next line is joined on without it. Hyphens typed by hand, like the
+     * one in ‘well-’ and ‘known’, are left alone.
+     *
+     * Returns lines itself if nothing was joined.
+     */
+    public static List<? extends CharSequence> rejoin(List<? extends CharSequence> lines) {
+        List<CharSequence> ret = null;
+        CharSequence current = null;
+        for (int i = 0; i < lines.size(); i++) {
+            CharSequence line = lines.get(i);
+            if (current != null) {
+                int split = softHyphenAtEnd(current, line);
+                if (split >= 0) {
+                    if (ret == null)
+                        ret = new ArrayList<>(lines.subList(0, i - 1));
+                    current = new StringBuilder(current.length() + line.length())
+                            .append(current, 0, split)
+                            .append(line, firstNonSpace(line), line.length());
+                    continue;
+                }
+                if (ret != null)
+                    ret.add(current);
+            }
+            current = line;
+        }
+        if (ret == null)
+            return lines;
+        ret.add(current);
+        return ret;
+    }
+
+    /**
+     * If line ends with a soft hyphen and next has a word to join on to it,
+     * return where the hyphen is, otherwise -1.
+     */
+    private static int softHyphenAtEnd(CharSequence line, CharSequence next) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1)))
+            end--;
+        if (end == 0 || line.charAt(end - 1) != SOFT_HYPHEN
+                || firstNonSpace(next) == next.length())
+            return -1;
+        return end - 1;
+    }
+
+    private static int firstNonSpace(CharSequence s) {
+        int i = 0;
+        while (i < s.length() && Character.isWhitespace(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    private static int[] offset(int[] breaks, int start) {
+        int[] ret = new int[breaks.length];
+        for (int i = 0; i < breaks.length; i++)
+            ret[i] = start + breaks[i];
+        return ret;
+    }
+
+    /** The child of node along the edge labelled c, or -1 */
+    private int child(int node, char c) {
+        int lo = _childStart[node];
+        int hi = _childStart[node + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = _edgeChar[mid];
+            if (m < c) {
+                lo = mid + 1;
+            } else if (m > c) {
+                hi = mid;
+            } else {
+                return _edgeNode[mid];
+            }
+        }
+        return -1;
+    }
+
+    /** A trie node, only while loading */
+    private static final class Node {
+        final TreeMap<Character, Node> _children = new TreeMap<>();
+        byte[] _values;
+    }
+}
@@ -0,0 +1,211 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ca.neitsch.intellij.reflow.blockcomment.CommonPrefix.nonAlphabeticPrefix;
+
+/**
+ * Rewraps a paragraph after one of its lines grows too long, as when typing.
+ *
+ * Only the edited line and the rest of its paragraph are reflowed; the lines
+ * before it are left alone, since typing on one line can’t change how the
+ * lines before it should be broken. In prose, Markdown headings, table rows
+ * and code blocks are never rewrapped, since their line breaks mean
+ * something.
+ */
+public class IncrementalReflow {
+    // Up to three spaces of indentation, as in CommonMark, then the markup
+    private static final Pattern RE_FENCE = Pattern.compile("^ {0,3}(`{3,}|~{3,})");
+    private static final Pattern RE_ATX_HEADING = Pattern.compile("^ {0,3}#{1,6}(\\s|$)");
+    private static final Pattern RE_SETEXT_UNDERLINE = Pattern.compile("^ {0,3}(=+|-+)\\s*$");
+    /** Indentation, in columns, that makes a line an indented code block */
+    private static final int CODE_INDENT = 4;
+
+    private final TextFlow _flow;
+    private final CodecRegistry _codecs;
+
+    public IncrementalReflow(TextFlow flow, CodecRegistry codecs) {
+        _flow = flow;
+        _codecs = codecs;
+    }
+
+    /**
+     * Return the edit that rewraps the paragraph from the line containing
+     * offset, or null if there is nothing to do.
+     *
+     * @param prose Whether the text is prose throughout, as in a Markdown
+     *         file; if not, only comments are rewrapped.
+     */
+    public TextEdit rewrap(CharSequence text, int offset, boolean prose) {
+        int lineStart = lineStart(text, offset);
+        int lineEnd = lineEnd(text, offset);
+        String line = text.subSequence(lineStart, lineEnd).toString();
+
+        if (DisplayWidth.columns(line) <= TextFlow.WIDTH)
+            return null;
+        // Probably still typing; rewrapping now would eat the space.
+        if (WordScanner.isWhitespace(line.charAt(line.length() - 1)))
+            return null;
+        if (prose ? isMarkdownBlock(text, lineStart, lineEnd) : !isComment(line))
+            return null;
+
+        String prefix = continuationPrefix(nonAlphabeticPrefix(line));
+        List<String> lines = new ArrayList<>();
+        lines.add(line);
+        int end = lineEnd;
+        while (end < text.length()) {
+            int nextEnd = lineEnd(text, end + 1);
+            String next = text.subSequence(end + 1, nextEnd).toString();
+            if (Paragraph.isSeparator(next)
+                    || Paragraph.startsListItem(next)
+                    || !nonAlphabeticPrefix(next).equals(prefix))
+                break;
+            lines.add(next);
+            end = nextEnd;
+        }
+
+        String replacement = _flow.reflow(lines);
+        if (end < text.length()) {
+            end++;
+        } else {
+            replacement = replacement.substring(0, replacement.length() - 1);
+        }
+        return TextEdit.minimal(text, lineStart, end, replacement);
+    }
+
+    /**
+     * Whether the line from lineStart to lineEnd is a heading, a table row,
+     * or code, rather than a paragraph of prose.
+     */
+    private static boolean isMarkdownBlock(CharSequence text, int lineStart, int lineEnd) {
+        String line = text.subSequence(lineStart, lineEnd).toString();
+        String trimmed = line.trim();
+        if (RE_ATX_HEADING.matcher(line).find()
+                || trimmed.startsWith("|") || trimmed.endsWith("|"))
+            return true;
+        if (lineEnd < text.length()) {
+            String next = text.subSequence(lineEnd + 1, lineEnd(text, lineEnd + 1)).toString();
+            if (RE_SETEXT_UNDERLINE.matcher(next).find())
+                return true;
+        }
+        return isInFence(text, lineEnd) || isIndentedCode(text, lineStart);
+    }
+
+    /**
+     * Whether the line ending at lineEnd is a fence or between fences, going
+     * by the fences from the start of the text.
+     */
+    private static boolean isInFence(CharSequence text, int lineEnd) {
+        String open = null;
+        int start = 0;
+        while (start <= lineEnd) {
+            int end = lineEnd(text, start);
+            Matcher m = RE_FENCE.matcher(text.subSequence(start, end));
+            if (m.find()) {
+                // A fence is closed by one of the same character, at least
+                // as long, with nothing after it
+                String fence = m.group(1);
+                if (open == null) {
+                    open = fence;
+                } else if (fence.charAt(0) == open.charAt(0)
+                        && fence.length() >= open.length()
+                        && text.subSequence(start + m.end(), end).toString().trim().isEmpty()) {
+                    if (end == lineEnd)
+                        return true;
+                    open = null;
+                }
+            }
+            if (end == lineEnd)
+                return open != null;
+            start = end + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Whether the line at lineStart is in an indented code block: indented
+     * by {@link #CODE_INDENT} columns or more, after a blank line, and not
+     * the continuation of a list item.
+     */
+    private static boolean isIndentedCode(CharSequence text, int lineStart) {
+        if (indentColumns(text, lineStart) < CODE_INDENT)
+            return false;
+        // Look back past the indented and blank lines for the line the block
+        // follows; a paragraph can’t be interrupted by indented code.
+        boolean blankAfter = false;
+        int start = lineStart;
+        while (start > 0) {
+            int prevStart = lineStart(text, start - 1);
+            String prev = text.subSequence(prevStart, start - 1).toString();
+            if (prev.trim().isEmpty()) {
+                blankAfter = true;
+            } else if (indentColumns(text, prevStart) >= CODE_INDENT) {
+                blankAfter = false;
+            } else {
+                return blankAfter && !Paragraph.startsListItem(prev);
+            }
+            start = prevStart;
+        }
+        return true;
+    }
+
+    private static int indentColumns(CharSequence text, int lineStart) {
+        int columns = 0;
+        for (int i = lineStart; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                columns++;
+            } else if (c == '\t') {
+                columns += CODE_INDENT - columns % CODE_INDENT;
+            } else {
+                break;
+            }
+        }
+        return columns;
+    }
+
+    private boolean isComment(String line) {
+        if (!CodecRegistry.isFallback(_codecs.classify(ImmutableList.of(line))))
+            return true;
+        // The middle of a C comment
+        String prefix = nonAlphabeticPrefix(line);
+        return prefix.trim().equals("*") && prefix.endsWith(" ");
+    }
+
+    /**
+     * The prefix of the following lines of the paragraph, e.g., ‘ * ’ after a
+     * first line of ‘/* ’.
+     */
+    private static String continuationPrefix(String prefix) {
+        int indent = 0;
+        while (indent < prefix.length() && WordScanner.isWhitespace(prefix.charAt(indent)))
+            indent++;
+        for (String opener: new String[] {"/**", "/*"}) {
+            if (prefix.startsWith(opener, indent)) {
+                return prefix.substring(0, indent) + " *" + Paragraph.continuationPrefix(
+                        prefix.substring(indent + opener.length()));
+            }
+        }
+        return Paragraph.continuationPrefix(prefix);
+    }
+
+    static int lineStart(CharSequence text, int offset) {
+        int i = Math.min(offset, text.length());
+        while (i > 0 && text.charAt(i - 1) != '\n')
+            i--;
+        return i;
+    }
+
+    static int lineEnd(CharSequence text, int offset) {
+        int i = offset;
+        while (i < text.length() && text.charAt(i) != '\n')
+            i++;
+        return i;
+    }
+}
@@ -0,0 +1,170 @@
+package ca.neitsch.intellij.reflow;
+
+/**
+ * Where text without spaces may be broken across lines, following the pair
+ * rules of Unicode’s line breaking algorithm, UAX #14, for the classes that
+ * matter when reflowing: ideographs and kana may be broken between, but not
+ * before closing punctuation or small kana, after opening punctuation, or on
+ * either side of glue like a no-break space.
+ *
+ * Breaks that UAX #14 allows after hyphens and slashes are left out, since in
+ * comments those are far more often in identifiers, options and paths than in
+ * prose.
+ *
+ * Classes of the Basic Multilingual Plane come from a table built once; text
+ * that is all ASCII never gets this far.
+ */
+public final class LineBreakClass {
+    /** Letters, digits and most symbols: no break between them */
+    static final byte AL = 0;
+    /** Ideographs, kana, Hangul and emoji: a break on either side */
+    static final byte ID = 1;
+    /** Opening punctuation: no break after */
+    static final byte OP = 2;
+    /** Closing punctuation: no break before */
+    static final byte CL = 3;
+    /** Nonstarters, like small kana and ‘!’ or ‘,’: no break before */
+    static final byte NS = 4;
+    /** Glue, like a no-break space or word joiner: no break either side */
+    static final byte GL = 5;
+    /** Zero-width and ideographic spaces: a break after, not before */
+    static final byte ZW = 6;
+    /** Combining marks, which take the class of what they combine with */
+    static final byte CM = 7;
+
+    private static final byte[] BMP = new byte[0x10000];
+
+    static {
+        for (int c = 0; c < 0x10000; c++) {
+            switch (Character.getType(c)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.FORMAT:
+                BMP[c] = CM;
+                break;
+            default:
+                BMP[c] = AL;
+            }
+        }
+
+        set(ID, 0x2E80, 0x2FFF, 0x3003, 0x303F, 0x3040, 0x31FF, 0x3200, 0x4DBF,
+                0x4E00, 0x9FFF, 0xA000, 0xA4CF, 0xAC00, 0xD7A3, 0xF900, 0xFAFF,
+                0xFE30, 0xFE4F, 0xFF01, 0xFF60, 0xFF66, 0xFF9F, 0xFFE0, 0xFFE6);
+
+        // ([{〈《「『【〔〖〘〚〝
+        set(OP, "([{\u3008\u300A\u300C\u300E\u3010\u3014\u3016\u3018\u301A\u301D"
+                // （［｛｟｢
+                + "\uFF08\uFF3B\uFF5B\uFF5F\uFF62");
+        // )]}、。〉》」』】〕〗〙
+        set(CL, ")]}\u3001\u3002\u3009\u300B\u300D\u300F\u3011\u3015\u3017\u3019"
+                // 〛〞〟），．］｝｠｡
+                + "\u301B\u301E\u301F\uFF09\uFF0C\uFF0E\uFF3D\uFF5D\uFF60\uFF61"
+                // ｣､
+                + "\uFF63\uFF64");
+        // !?,.:;…‼‽々〜〻゛゜ゝ
+        set(NS, "!?,.:;\u2026\u203C\u203D\u3005\u301C\u303B\u309B\u309C\u309D"
+                // ゞ゠・ーヽヾ！：；？
+                + "\u309E\u30A0\u30FB\u30FC\u30FD\u30FE\uFF01\uFF1A\uFF1B\uFF1F"
+                // ･ｰ
+                + "\uFF65\uFF70"
+                // Small kana
+                // ぁぃぅぇぉっゃゅょゎ
+                + "\u3041\u3043\u3045\u3047\u3049\u3063\u3083\u3085\u3087\u308E"
+                // ゕゖァィゥェォッャュ
+                + "\u3095\u3096\u30A1\u30A3\u30A5\u30A7\u30A9\u30C3\u30E3\u30E5"
+                // ョヮヵヶｧｨｩｪｫｬ
+                + "\u30E7\u30EE\u30F5\u30F6\uFF67\uFF68\uFF69\uFF6A\uFF6B\uFF6C"
+                // ｭｮｯ
+                + "\uFF6D\uFF6E\uFF6F");
+        set(NS, 0x31F0, 0x31FF);
+        set(GL, "\u00A0\u2007\u2011\u202F\u2060\uFEFF");
+        set(ZW, "\u200B\u3000");
+    }
+
+    private LineBreakClass() {
+    }
+
+    private static void set(byte cls, int... ranges) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int c = ranges[i]; c <= ranges[i + 1]; c++)
+                BMP[c] = cls;
+        }
+    }
+
+    private static void set(byte cls, String chars) {
+        for (int i = 0; i < chars.length(); i++)
+            BMP[chars.charAt(i)] = cls;
+    }
+
+    static byte of(int codePoint) {
+        if (codePoint < 0x10000)
+            return BMP[codePoint];
+        if ((codePoint >= 0x1F000 && codePoint <= 0x1FAFF)
+                || (codePoint >= 0x20000 && codePoint <= 0x3FFFD))
+        {
+            // Skin tone modifiers attach to the emoji before them.
+            return codePoint >= 0x1F3FB && codePoint <= 0x1F3FF ? CM : ID;
+        }
+        switch (Character.getType(codePoint)) {
+        case Character.NON_SPACING_MARK:
+        case Character.ENCLOSING_MARK:
+        case Character.COMBINING_SPACING_MARK:
+        case Character.FORMAT:
+            return CM;
+        default:
+            return AL;
+        }
+    }
+
+    /** Whether a line may be broken between characters of these classes */
+    static boolean breakBetween(byte before, byte after) {
+        if (after == ZW)
+            return false;
+        if (before == ZW)
+            return true;
+        if (before == GL || after == GL || before == OP)
+            return false;
+        if (after == CL || after == NS)
+            return false;
+        return before == ID || after == ID;
+    }
+
+    /**
+     * Return the first break opportunity in s after start and before end, or
+     * end if there is none. s[start, end) should hold no whitespace.
+     */
+    public static int nextBreak(CharSequence s, int start, int end) {
+        int cp = Character.codePointAt(s, start);
+        int i = start + Character.charCount(cp);
+        byte before = of(cp);
+        if (before == CM)
+            before = AL;
+        while (i < end) {
+            cp = Character.codePointAt(s, i);
+            byte after = of(cp);
+            if (after != CM) {
+                if (breakBetween(before, after))
+                    return i;
+                before = after;
+            }
+            i += Character.charCount(cp);
+        }
+        return end;
+    }
+
+    /**
+     * Whether a line end between these characters stands for no space at
+     * all, as it does in Chinese and Japanese, rather than a space.
+     */
+    public static boolean joinsWithoutSpace(int before, int after) {
+        return isCjk(before) || isCjk(after);
+    }
+
+    private static boolean isCjk(int codePoint) {
+        if (codePoint < 0x2E80)
+            return false;
+        byte cls = of(codePoint);
+        return cls == ID || cls == OP || cls == CL || cls == NS;
+    }
+}
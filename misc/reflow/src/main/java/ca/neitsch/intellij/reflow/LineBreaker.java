@@ -0,0 +1,36 @@
+package ca.neitsch.intellij.reflow;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A strategy for choosing where to break a paragraph of prefix-less text into
+ * lines.
+ */
+public interface LineBreaker {
+    /** Breaks like vim’s gq: fill each line as much as possible. */
+    LineBreaker GREEDY = (lines, maxWidth) -> new GreedyTextFlow(lines, maxWidth).getFlowed();
+
+    /**
+     * Breaks like {@link #GREEDY}, but hyphenates words that don’t fit at the
+     * end of a line, using TeX’s patterns for US English.
+     */
+    LineBreaker HYPHENATED = (lines, maxWidth) ->
+            new GreedyTextFlow(lines, maxWidth, Hyphenator.getDefault()).getFlowed();
+
+    /** Breaks like par: minimize the total raggedness of the paragraph. */
+    LineBreaker OPTIMAL = (lines, maxWidth) -> new OptimalTextFlow(lines, maxWidth).getFlowed();
+
+    /**
+     * Reflow the words of the given lines into lines of at most maxWidth
+     * characters. Words longer than maxWidth are put on a line by themselves.
+     *
+     * @return The reflowed lines, joined by newlines, without a trailing
+     *         newline.
+     */
+    String flow(List<? extends CharSequence> lines, int maxWidth);
+
+    default String flow(String s, int maxWidth) {
+        return flow(Collections.singletonList(s), maxWidth);
+    }
+}
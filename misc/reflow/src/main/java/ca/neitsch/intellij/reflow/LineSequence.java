@@ -1,18 +1,27 @@
 package ca.neitsch.intellij.reflow;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
-
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
-
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+/**
+ * The lines of a text that intersect its selection.
+ *
+ * The lines are kept as offsets into the text, so that selecting a few lines
+ * of a huge document does not copy it; the text of a line is only copied out
+ * when it is asked for.
+ */
 public class LineSequence {
     private StringWithSelection _s;
-    private String _input;
+    private CharSequence _input;
 
     // Where we are while parsing lines; initiaily startPos
     private int _pointer;
-    private List<String> _lines;
+    private int _lineCount;
+    private int[] _lineStarts = new int[4];
+    private int[] _lineEnds = new int[4];
 
     private static final int UNSET = -1;
 
@@ -22,30 +31,29 @@ public class LineSequence {
 
     public LineSequence(StringWithSelection s) {
         _s = s;
-        _input = _s.getString();
+        _input = _s.getText();
 
-        _lines = Lists.newArrayList();
         _pointer = _s.getStartPos();
 
         while (_pointer < _s.getEndPos()) {
             addNextLine();
         }
-
-        _lines = ImmutableList.copyOf(_lines);
     }
 
     private void addNextLine() {
-        int lineStart = _input.lastIndexOf('\n', _pointer) + 1;
+        // Only the first line needs a search back for its start; every later
+        // one starts just past the newline that ended the one before, so the
+        // text is scanned once.
+        int lineStart = _lineCount == 0
+                ? lastIndexOf(_input, '\n', _pointer) + 1
+                : _pointer + 1;
 
         if (lineStart == _s.getEndPos()) {
             _pointer = lineStart;
             return;
         }
 
-        // No newline found?
-        if (lineStart == -1)
-            lineStart = 0;
-        int lineEnd = _input.indexOf('\n', lineStart);
+        int lineEnd = indexOf(_input, '\n', lineStart);
         if (lineEnd == -1)
             lineEnd = _input.length();
 
@@ -56,8 +64,13 @@ public class LineSequence {
         if (_initialRemaining == UNSET)
             _initialRemaining = _pointer - lineStart;
 
-        String line = _input.substring(lineStart, lineEnd);
-        _lines.add(line);
+        if (_lineCount == _lineStarts.length) {
+            _lineStarts = Arrays.copyOf(_lineStarts, _lineCount * 2);
+            _lineEnds = Arrays.copyOf(_lineEnds, _lineCount * 2);
+        }
+        _lineStarts[_lineCount] = lineStart;
+        _lineEnds[_lineCount] = lineEnd;
+        _lineCount++;
 
         // The end position comes *after* the trailing newline, if there is one.
         _lastLineEndPos = Math.min(lineEnd + 1, _input.length());
@@ -65,16 +78,63 @@ public class LineSequence {
         _pointer = lineEnd;
     }
 
+    /** Like {@link String#lastIndexOf(int, int)}, for any CharSequence */
+    private static int lastIndexOf(CharSequence s, char c, int fromIndex) {
+        for (int i = Math.min(fromIndex, s.length() - 1); i >= 0; i--) {
+            if (s.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /** Like {@link String#indexOf(int, int)}, for any CharSequence */
+    private static int indexOf(CharSequence s, char c, int fromIndex) {
+        for (int i = Math.max(fromIndex, 0); i < s.length(); i++) {
+            if (s.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
     public String getFirstLineWithSelection() {
-        return _lines.get(0);
+        return getLine(0).toString();
     }
 
     public String getLastLineWithSelection() {
-        return Iterables.getLast(_lines);
+        return getLine(_lineCount - 1).toString();
     }
 
+    /** The selected lines, each copied out of the text when it is read */
     public List<String> getSelectedLines() {
-        return _lines;
+        return new Lines<>(i -> getLine(i).toString());
+    }
+
+    /**
+     * The selected lines as views of the text; whether these are copies
+     * depends on the text’s subSequence() implementation.
+     */
+    public List<CharSequence> getSelectedLineSequences() {
+        return new Lines<>(this::getLine);
+    }
+
+    public int getLineCount() {
+        return _lineCount;
+    }
+
+    /** The position of the start of the i’th selected line */
+    public int getLineStartPos(int i) {
+        return _lineStarts[i];
+    }
+
+    /** The position of the end of the i’th selected line, before any newline */
+    public int getLineEndPos(int i) {
+        return _lineEnds[i];
+    }
+
+    private CharSequence getLine(int i) {
+        if (i < 0 || i >= _lineCount)
+            throw new IndexOutOfBoundsException(String.valueOf(i));
+        return _input.subSequence(_lineStarts[i], _lineEnds[i]);
     }
 
     /**
@@ -100,4 +160,56 @@ public class LineSequence {
     public int getLastLineEndPos() {
         return _lastLineEndPos;
     }
+
+    private class Lines<T>
+            extends AbstractList<T>
+            implements RandomAccess
+    {
+        private final IntFunction<T> _reader;
+
+        Lines(IntFunction<T> reader) {
+            _reader = reader;
+        }
+
+        @Override
+        public T get(int index) {
+            return _reader.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return _lineCount;
+        }
+    }
+
+    /**
+     * Merge the selections of text that share a line, since each stands for
+     * the whole lines it touches. The selections, from starts[i] to ends[i],
+     * must be non-empty and in order of their starts.
+     *
+     * @return The merged starts and ends
+     */
+    public static int[][] mergeByLine(CharSequence text, int[] starts, int[] ends) {
+        int[] mergedStarts = new int[starts.length];
+        int[] mergedEnds = new int[ends.length];
+        int n = 0;
+        for (int i = 0; i < starts.length; i++) {
+            int lineStart = lastIndexOf(text, '\n', starts[i] - 1) + 1;
+            if (n > 0 && lineStart <= lastLineEnd(text, mergedEnds[n - 1])) {
+                mergedEnds[n - 1] = Math.max(mergedEnds[n - 1], ends[i]);
+            } else {
+                mergedStarts[n] = starts[i];
+                mergedEnds[n] = ends[i];
+                n++;
+            }
+        }
+        return new int[][] {
+                Arrays.copyOf(mergedStarts, n), Arrays.copyOf(mergedEnds, n)};
+    }
+
+    /** The end of the last line touched by a selection ending at end */
+    private static int lastLineEnd(CharSequence text, int end) {
+        int lineEnd = indexOf(text, '\n', end - 1);
+        return lineEnd == -1 ? text.length() : lineEnd;
+    }
 }
@@ -1,20 +1,41 @@
 package ca.neitsch.intellij.reflow;
 
+import com.intellij.codeInsight.hint.HintManager;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.editor.Caret;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
-import com.intellij.openapi.editor.SelectionModel;
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.DocumentUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public abstract class LineSequenceAction
         extends AnAction
 {
+    /**
+     * Selections with more characters than this are transformed in a
+     * cancellable background task instead of on the event dispatch thread.
+     */
+    private static final int BACKGROUND_THRESHOLD = 100_000;
+
+    private final String _title;
+
     public LineSequenceAction(String s) {
         super(s);
+        _title = s;
     }
 
 
@@ -29,22 +50,190 @@ public abstract class LineSequenceAction
         if (d == null) {
             return;
         }
-        SelectionModel s = e.getSelectionModel();
+        ReflowTimings.Record timings = ReflowTimings.begin(_title);
+        long t = timings.start();
+        int[][] selections = selections(e, d.getCharsSequence());
+        timings.end(ReflowTimings.Phase.READ, t);
+        if (selections[0].length == 0) {
+            return;
+        }
+        Transform transform = prepare(event);
+        if (transform == null) {
+            return;
+        }
+
+        int size = 0;
+        for (int i = 0; i < selections[0].length; i++) {
+            size += selections[1][i] - selections[0][i];
+        }
+        if (p == null || size <= BACKGROUND_THRESHOLD) {
+            apply(p, d, computeEdits(transform, d.getCharsSequence(), selections,
+                    new EmptyProgressIndicator(), timings), timings);
+            return;
+        }
+
+        long stamp = d.getModificationStamp();
+        ProgressManager.getInstance().run(new Task.Backgroundable(p, _title, true) {
+            private List<TextEdit> _edits;
+
+            @Override
+            public void run(ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                // Only take the snapshot under the read lock; holding it for
+                // the whole transform would hold up typing and every write
+                // action until it's done. If the document changes meanwhile,
+                // onSuccess() throws the edits away.
+                long read = timings.start();
+                CharSequence text = ReadAction.compute(() -> {
+                    if (d.getModificationStamp() != stamp) {
+                        throw new ProcessCanceledException();
+                    }
+                    return d.getImmutableCharSequence();
+                });
+                timings.end(ReflowTimings.Phase.READ, read);
+                _edits = computeEdits(transform, text, selections, indicator,
+                        timings);
+            }
+
+            @Override
+            public void onSuccess() {
+                // The computed offsets are only good for the text they were
+                // computed from.
+                if (d.getModificationStamp() != stamp) {
+                    HintManager.getInstance().showErrorHint(e,
+                            _title + " cancelled: the document changed");
+                    return;
+                }
+                apply(p, d, _edits, timings);
+            }
+        });
+    }
+
+    /**
+     * Return the starts and ends of the non-empty selections of all the
+     * carets, merged by {@link LineSequence#mergeByLine}.
+     */
+    private static int[][] selections(Editor e, CharSequence text) {
+        List<Caret> carets = new ArrayList<>(e.getCaretModel().getAllCarets());
+        carets.removeIf(c -> c.getSelectionStart() >= c.getSelectionEnd());
+        carets.sort(Comparator.comparingInt(Caret::getSelectionStart));
+
+        int[] starts = new int[carets.size()];
+        int[] ends = new int[carets.size()];
+        for (int i = 0; i < carets.size(); i++) {
+            starts[i] = carets.get(i).getSelectionStart();
+            ends[i] = carets.get(i).getSelectionEnd();
+        }
+        return LineSequence.mergeByLine(text, starts, ends);
+    }
+
+    /**
+     * Compute the edits for all the selections from one snapshot of the text,
+     * in increasing order of position.
+     */
+    private List<TextEdit> computeEdits(Transform transform, CharSequence text,
+                                        int[][] selections,
+                                        ProgressIndicator indicator,
+                                        ReflowTimings.Record timings)
+    {
+        // So that the transform can find the record, to add its phases
+        timings.attach();
+        try {
+            List<TextEdit> edits = new ArrayList<>();
+            for (int i = 0; i < selections[0].length; i++) {
+                TextEdit edit = computeEdit(transform, text,
+                        selections[0][i], selections[1][i], indicator, timings);
+                if (edit != null) {
+                    edits.add(edit);
+                }
+            }
+            return edits;
+        } finally {
+            timings.detach();
+        }
+    }
+
+    private TextEdit computeEdit(Transform transform, CharSequence text,
+                                 int startPos, int endPos,
+                                 ProgressIndicator indicator,
+                                 ReflowTimings.Record timings)
+    {
+        long t = timings.start();
         LineSequence ls = new LineSequence(
-                new DefaultStringWithSelection(d.getText(),
-                        s.getSelectionStart(),
-                        s.getSelectionEnd()));
+                new DefaultStringWithSelection(text, startPos, endPos));
+        timings.end(ReflowTimings.Phase.PARSE, t);
+        timings.addSize(endPos - startPos, ls.getLineCount());
+        indicator.checkCanceled();
+
+        String replacement = transform.apply(ls, indicator);
+        indicator.checkCanceled();
 
-        String replacement = transform(ls);
+        // Only touch what actually changed, if anything, to keep the undo
+        // entry small and avoid needless reparsing.
+        return TextEdit.minimal(text,
+                ls.getFirstLineStartPos(),
+                ls.getLastLineEndPos(),
+                replacement);
+    }
 
+    /**
+     * Apply the edits as one undoable command, back to front so that the
+     * earlier offsets stay good, and in one bulk update if there are several.
+     */
+    private void apply(Project p, Document d, List<TextEdit> edits,
+                       ReflowTimings.Record timings)
+    {
+        if (edits.isEmpty()) {
+            timings.finish();
+            return;
+        }
+
+        long t = timings.start();
         CommandProcessor.getInstance().executeCommand(p, () -> {
-            WriteAction.run(() ->
-                    d.replaceString(
-                            ls.getFirstLineStartPos(),
-                            ls.getLastLineEndPos(),
-                            replacement));
+            WriteAction.run(() -> {
+                if (edits.size() == 1) {
+                    replace(d, edits.get(0));
+                } else {
+                    DocumentUtil.executeInBulk(d, true, () -> {
+                        for (int i = edits.size() - 1; i >= 0; i--) {
+                            replace(d, edits.get(i));
+                        }
+                    });
+                }
+            });
         }, "reflow", d);
+        timings.end(ReflowTimings.Phase.WRITE, t);
+        timings.finish();
+    }
+
+    private static void replace(Document d, TextEdit edit) {
+        d.replaceString(edit.getStart(), edit.getEnd(), edit.getReplacement());
     }
 
-    protected abstract String transform(LineSequence ls);
+    /**
+     * Called on the event dispatch thread before anything else, so that an
+     * action can ask the user how to go about it. Whatever the action needs
+     * to remember should go in the returned transform rather than a field,
+     * since the transform may still be running in the background when the
+     * action is next invoked.
+     *
+     * @return The transform to apply, or null to do nothing
+     */
+    protected Transform prepare(AnActionEvent event) {
+        return this::transform;
+    }
+
+    /**
+     * Return the text with which to replace the selected lines.
+     *
+     * This may run on a background thread for large selections, in which case
+     * it should call <tt>indicator.checkCanceled()</tt> now and then.
+     */
+    protected abstract String transform(LineSequence ls,
+                                        ProgressIndicator indicator);
+
+    @FunctionalInterface
+    protected interface Transform {
+        String apply(LineSequence ls, ProgressIndicator indicator);
+    }
 }
@@ -0,0 +1,341 @@
+package ca.neitsch.intellij.reflow;
+
+import java.text.Collator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Sorts lines by a key that is extracted from each line once, up front,
+ * instead of on every comparison.
+ */
+public class LineSorter {
+    public enum Order {
+        /** By UTF-16 code unit, like {@link String#compareTo} */
+        LEXICOGRAPHIC,
+        /** Runs of digits compare by numeric value, so ‘a2’ sorts before ‘a10’ */
+        NATURAL,
+        /** By the rules of a locale, using precomputed collation keys */
+        LOCALE,
+    }
+
+    /** Below this many lines, sorting and key extraction stay on one thread */
+    private static final int PARALLEL_MIN_LINES = 10_000;
+
+    /** How often, in lines, key extraction checks for cancellation */
+    private static final int CHECK_INTERVAL = 4096;
+
+    private final Order _order;
+    private Locale _locale = Locale.getDefault();
+    private boolean _ignoreCase;
+    private boolean _reverse;
+    private boolean _unique;
+    private int _field;
+    private int _column;
+
+    public LineSorter() {
+        this(Order.LEXICOGRAPHIC);
+    }
+
+    public LineSorter(Order order) {
+        _order = order;
+    }
+
+    public void setLocale(Locale locale) {
+        _locale = locale;
+    }
+
+    public void setIgnoreCase(boolean ignoreCase) {
+        _ignoreCase = ignoreCase;
+    }
+
+    public void setReverse(boolean reverse) {
+        _reverse = reverse;
+    }
+
+    /** Keep only the first of each run of lines with equal keys */
+    public void setUnique(boolean unique) {
+        _unique = unique;
+    }
+
+    /**
+     * Sort by the text starting at whitespace-separated field n, counting
+     * from 1, like <tt>sort -k n</tt>. Zero means the whole line.
+     */
+    public void setField(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative field " + n);
+        }
+        _field = n;
+        _column = 0;
+    }
+
+    /**
+     * Sort by the text starting at display column n, counting from 1, as
+     * measured by {@link DisplayWidth}. Zero means the whole line.
+     */
+    public void setColumn(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative column " + n);
+        }
+        _column = n;
+        _field = 0;
+    }
+
+    /**
+     * Make a sorter from <tt>sort</tt>-style options: <tt>-V</tt> for natural
+     * order, <tt>-L</tt> for the default locale’s order, <tt>-f</tt>,
+     * <tt>-r</tt>, <tt>-u</tt>, <tt>-k FIELD</tt> and <tt>--column N</tt>.
+     *
+     * @throws IllegalArgumentException if an option isn’t understood
+     */
+    public static LineSorter fromOptions(List<String> options) {
+        Order order = Order.LEXICOGRAPHIC;
+        boolean ignoreCase = false, reverse = false, unique = false;
+        int field = 0, column = 0;
+        for (int i = 0; i < options.size(); i++) {
+            String o = options.get(i);
+            switch (o) {
+            case "-V":
+                order = Order.NATURAL;
+                break;
+            case "-L":
+                order = Order.LOCALE;
+                break;
+            case "-f":
+                ignoreCase = true;
+                break;
+            case "-r":
+                reverse = true;
+                break;
+            case "-u":
+                unique = true;
+                break;
+            case "-k":
+            case "--column":
+                if (i + 1 == options.size()) {
+                    throw new IllegalArgumentException(o + " needs a number");
+                }
+                int n;
+                try {
+                    n = Integer.parseInt(options.get(++i));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "Not a number: " + options.get(i));
+                }
+                if (n < 1) {
+                    throw new IllegalArgumentException(o + " counts from 1");
+                }
+                if (o.equals("-k")) {
+                    field = n;
+                } else {
+                    column = n;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + o);
+            }
+        }
+
+        LineSorter s = new LineSorter(order);
+        s.setIgnoreCase(ignoreCase);
+        s.setReverse(reverse);
+        s.setUnique(unique);
+        if (field > 0) {
+            s.setField(field);
+        } else if (column > 0) {
+            s.setColumn(column);
+        }
+        return s;
+    }
+
+    /**
+     * Return the lines in sorted order. Lines with equal keys keep their
+     * original order.
+     *
+     * @param checkCanceled Run now and then; may throw to abandon the sort.
+     */
+    public String[] sort(List<String> lines, Runnable checkCanceled) {
+        String[] a = lines.toArray(new String[0]);
+        checkCanceled.run();
+        if (sortsWholeLines()) {
+            return sortWholeLines(a, checkCanceled);
+        }
+        return sort(a, keyFunction(), checkCanceled);
+    }
+
+    public boolean isUnique() {
+        return _unique;
+    }
+
+    /**
+     * Return a function from lines to their sort keys, for comparing with
+     * {@link #compareKeys}. The function may be called from any thread.
+     */
+    public Function<String, Object> keyFunction() {
+        switch (_order) {
+        case NATURAL:
+            return s -> naturalKey(fold(keyText(s)));
+        case LOCALE:
+            Collator c = Collator.getInstance(_locale);
+            c.setStrength(_ignoreCase ? Collator.SECONDARY : Collator.TERTIARY);
+            // Collators aren’t thread-safe, so give each thread its own.
+            ThreadLocal<Collator> collators =
+                    ThreadLocal.withInitial(() -> (Collator)c.clone());
+            return s -> collators.get().getCollationKey(keyText(s));
+        default:
+            return s -> fold(keyText(s));
+        }
+    }
+
+    /** Compare two keys from {@link #keyFunction}, in sort order */
+    @SuppressWarnings("unchecked")
+    public int compareKeys(Object a, Object b) {
+        int c = ((Comparable<Object>)a).compareTo(b);
+        return _reverse ? -Integer.signum(c) : c;
+    }
+
+    private boolean sortsWholeLines() {
+        return _order == Order.LEXICOGRAPHIC
+                && !_ignoreCase && _field == 0 && _column == 0;
+    }
+
+    /**
+     * When the key is the whole line, sort the lines themselves. Equal lines
+     * are indistinguishable, so stability doesn’t matter.
+     */
+    private String[] sortWholeLines(String[] lines, Runnable checkCanceled) {
+        Comparator<String> cmp = _reverse
+                ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        if (lines.length >= PARALLEL_MIN_LINES) {
+            Arrays.parallelSort(lines, cmp);
+        } else {
+            Arrays.sort(lines, cmp);
+        }
+        checkCanceled.run();
+
+        if (!_unique) {
+            return lines;
+        }
+        int count = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (count == 0 || !lines[i].equals(lines[count - 1])) {
+                lines[count++] = lines[i];
+            }
+        }
+        return Arrays.copyOf(lines, count);
+    }
+
+    private String[] sort(String[] lines, Function<String, Object> key,
+                          Runnable checkCanceled)
+    {
+        int n = lines.length;
+        boolean parallel = n >= PARALLEL_MIN_LINES;
+
+        Entry[] entries = new Entry[n];
+        IntStream chunks = IntStream.range(0, (n + CHECK_INTERVAL - 1) / CHECK_INTERVAL);
+        (parallel ? chunks.parallel() : chunks).forEach(chunk -> {
+            checkCanceled.run();
+            int end = Math.min(n, (chunk + 1) * CHECK_INTERVAL);
+            for (int i = chunk * CHECK_INTERVAL; i < end; i++) {
+                entries[i] = new Entry(lines[i], key.apply(lines[i]));
+            }
+        });
+        checkCanceled.run();
+
+        Comparator<Entry> cmp = (x, y) -> compareKeys(x._key, y._key);
+        // Both sorts are stable, so equal keys keep their original order.
+        if (parallel) {
+            Arrays.parallelSort(entries, cmp);
+        } else {
+            Arrays.sort(entries, cmp);
+        }
+        checkCanceled.run();
+
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (_unique && count > 0
+                    && compareKeys(entries[i]._key, entries[i - 1]._key) == 0)
+            {
+                continue;
+            }
+            lines[count++] = entries[i]._line;
+        }
+        return count == n ? lines : Arrays.copyOf(lines, count);
+    }
+
+    private String fold(String s) {
+        return _ignoreCase ? s.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT) : s;
+    }
+
+    /** The part of the line that the key is taken from */
+    String keyText(String line) {
+        if (_field > 0) {
+            int i = 0;
+            for (int f = 1; ; f++) {
+                while (i < line.length() && WordScanner.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                if (f == _field || i == line.length()) {
+                    return line.substring(i);
+                }
+                while (i < line.length() && !WordScanner.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        if (_column > 0) {
+            return line.substring(DisplayWidth.offsetAt(line, _column - 1));
+        }
+        return line;
+    }
+
+    /**
+     * Return a string that sorts lexicographically the way s sorts naturally.
+     * Each run of ASCII digits becomes a ‘0’, a character holding the number
+     * of digits once leading zeros are stripped, and then those digits; so
+     * longer numbers sort after shorter ones, and numbers as a whole sort
+     * where digits do.
+     */
+    static String naturalKey(String s) {
+        StringBuilder sb = null;
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                if (sb != null) {
+                    sb.append(c);
+                }
+                i++;
+                continue;
+            }
+            if (sb == null) {
+                sb = new StringBuilder(s.length() + 8).append(s, 0, i);
+            }
+            while (i < s.length() && s.charAt(i) == '0') {
+                i++;
+            }
+            int digits = i;
+            while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                i++;
+            }
+            sb.append('0')
+                    .append((char)Math.min(i - digits, Character.MAX_VALUE))
+                    .append(s, digits, i);
+        }
+        return sb == null ? s : sb.toString();
+    }
+
+    private static final class Entry {
+        final String _line;
+        final Object _key;
+
+        Entry(String line, Object key) {
+            _line = line;
+            _key = key;
+        }
+    }
+}
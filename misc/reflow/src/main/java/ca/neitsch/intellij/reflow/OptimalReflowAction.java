@@ -0,0 +1,9 @@
+package ca.neitsch.intellij.reflow;
+
+public class OptimalReflowAction
+        extends ReflowAction
+{
+    public OptimalReflowAction() {
+        super("Reflow Text Evenly", LineBreaker.OPTIMAL);
+    }
+}
@@ -0,0 +1,217 @@
+package ca.neitsch.intellij.reflow;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Break text into lines so as to minimize the total badness of the paragraph,
+ * like Knuth-Plass or par, instead of greedily filling each line.
+ *
+ * The badness of a line is the square of the number of unused columns at its
+ * end, except for the last line, which is free. Because that cost is a convex
+ * function of the line’s length, the cost matrix is Monge, and so the best
+ * break point for each word never moves backwards as the paragraph grows. That
+ * lets us keep a queue of candidate break points, each owning a range of
+ * words, and find where a new candidate takes over by binary search. The whole
+ * paragraph is then solved in O(n log n) time instead of the O(n²) of the
+ * textbook dynamic program.
+ */
+public class OptimalTextFlow {
+    /** Cost of a line that does not fit; large, but safe to add to. */
+    private static final long INFINITY = Long.MAX_VALUE / 4;
+
+    private List<? extends CharSequence> _lines;
+    private int _maxLength;
+
+    // Each word is the range from _wordStart to _wordEnd of _wordLine
+    private int _wordCount;
+    private CharSequence[] _wordLine;
+    private int[] _wordStart;
+    private int[] _wordEnd;
+    // The columns between word i and the next one, if they share a line: 1
+    // for a space, or 0 where Unicode allows a break within a word
+    private byte[] _gapAfter;
+    // _offsets[j] is the width in columns of words 0 to j-1, each followed by
+    // its gap.
+    private long[] _offsets;
+    // _cost[j] is the least badness with which words 0 to j-1 can be set,
+    // with a line break after word j-1.
+    private long[] _cost;
+    private int[] _breakBefore;
+
+    public OptimalTextFlow(String s, int maxLength) {
+        this(Collections.singletonList(s), maxLength);
+    }
+
+    public OptimalTextFlow(List<? extends CharSequence> lines, int maxLength) {
+        _lines = lines;
+        _maxLength = Math.max(1, maxLength);
+    }
+
+    public String getFlowed() {
+        scanWords();
+        int n = _wordCount;
+        if (n == 0)
+            return "";
+
+        _offsets = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            // A word that is too long for any line gets one to itself, where
+            // it is as good as a full line.
+            int width = DisplayWidth.width(_wordLine[i], _wordStart[i], _wordEnd[i]);
+            _offsets[i + 1] = _offsets[i] + Math.min(width, _maxLength) + _gapAfter[i];
+        }
+
+        computeCosts(n);
+
+        // The last line costs nothing, so it starts wherever leaves the
+        // cheapest paragraph before it.
+        int lastLineStart = n - 1;
+        for (int i = n - 1; i >= 0 && lineWidth(i, n) <= _maxLength; i--) {
+            if (_cost[i] < _cost[lastLineStart])
+                lastLineStart = i;
+        }
+
+        return render(lastLineStart);
+    }
+
+    private void scanWords() {
+        int capacity = 16;
+        _wordCount = 0;
+        _wordLine = new CharSequence[capacity];
+        _wordStart = new int[capacity];
+        _wordEnd = new int[capacity];
+        _gapAfter = new byte[capacity];
+
+        WordScanner words = new WordScanner(_lines);
+        while (words.next()) {
+            if (_wordCount == capacity) {
+                capacity *= 2;
+                _wordLine = Arrays.copyOf(_wordLine, capacity);
+                _wordStart = Arrays.copyOf(_wordStart, capacity);
+                _wordEnd = Arrays.copyOf(_wordEnd, capacity);
+                _gapAfter = Arrays.copyOf(_gapAfter, capacity);
+            }
+            if (_wordCount > 0)
+                _gapAfter[_wordCount - 1] = (byte)(words.spaceBefore() ? 1 : 0);
+            _gapAfter[_wordCount] = 1;
+            _wordLine[_wordCount] = words.line();
+            _wordStart[_wordCount] = words.start();
+            _wordEnd[_wordCount] = words.end();
+            _wordCount++;
+        }
+    }
+
+    private void computeCosts(int n) {
+        _cost = new long[n + 1];
+        _breakBefore = new int[n + 1];
+
+        // Candidate break points, in increasing order, along with the first
+        // word count for which each one is the best choice.
+        int[] candidates = new int[n + 1];
+        int[] bestFrom = new int[n + 1];
+        int head = 0;
+        int tail = 0;
+
+        candidates[tail] = 0;
+        bestFrom[tail] = 1;
+        tail++;
+
+        for (int j = 1; j <= n; j++) {
+            while (head + 1 < tail && bestFrom[head + 1] <= j)
+                head++;
+            _breakBefore[j] = candidates[head];
+            _cost[j] = total(candidates[head], j);
+
+            if (j == n)
+                break;
+
+            // If j is at least as good as the last candidate where that
+            // candidate takes over, then it is at least as good everywhere
+            // after that too, and the last candidate is never needed.
+            int from = j + 1;
+            while (tail > head) {
+                int last = candidates[tail - 1];
+                from = Math.max(bestFrom[tail - 1], j + 1);
+                if (total(j, from) <= total(last, from)) {
+                    tail--;
+                } else {
+                    break;
+                }
+            }
+
+            if (tail == head) {
+                candidates[tail] = j;
+                bestFrom[tail] = j + 1;
+                tail++;
+                continue;
+            }
+
+            int x = firstWin(j, candidates[tail - 1], from + 1, n + 1);
+            if (x <= n) {
+                candidates[tail] = j;
+                bestFrom[tail] = x;
+                tail++;
+            }
+        }
+    }
+
+    /**
+     * Return the least x in [lo, hi) at which breaking before word j beats
+     * breaking before word last, or hi if there is none.
+     */
+    private int firstWin(int j, int last, int lo, int hi) {
+        int end = hi;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (total(j, mid) <= total(last, mid)) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return Math.min(lo, end);
+    }
+
+    /**
+     * Width of a line holding words i to j-1. The gap taken off depends only
+     * on j, and _offsets[j] minus it never decreases as j grows, so the cost
+     * matrix stays Monge.
+     */
+    private long lineWidth(int i, int j) {
+        return _offsets[j] - _offsets[i] - _gapAfter[j - 1];
+    }
+
+    private long total(int i, int j) {
+        long width = lineWidth(i, j);
+        if (width > _maxLength)
+            return INFINITY;
+        long slack = _maxLength - width;
+        return _cost[i] + slack * slack;
+    }
+
+    private String render(int lastLineStart) {
+        int lineCount = 1;
+        for (int i = lastLineStart; i > 0; i = _breakBefore[i])
+            lineCount++;
+
+        int[] starts = new int[lineCount + 1];
+        starts[lineCount] = _wordCount;
+        int k = lineCount - 1;
+        for (int i = lastLineStart; k >= 0; i = _breakBefore[i])
+            starts[k--] = i;
+
+        StringBuilder sb = new StringBuilder(WordScanner.flowedLengthBound(_lines));
+        for (int line = 0; line < lineCount; line++) {
+            if (line != 0)
+                sb.append('\n');
+            for (int w = starts[line]; w < starts[line + 1]; w++) {
+                if (w != starts[line] && _gapAfter[w - 1] != 0)
+                    sb.append(' ');
+                sb.append(_wordLine[w], _wordStart[w], _wordEnd[w]);
+            }
+        }
+        return sb.toString();
+    }
+}
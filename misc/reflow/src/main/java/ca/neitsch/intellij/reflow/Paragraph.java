@@ -0,0 +1,98 @@
+package ca.neitsch.intellij.reflow;
+
+import com.google.common.base.Strings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static ca.neitsch.intellij.reflow.blockcomment.CommonPrefix.nonAlphabeticPrefix;
+
+/**
+ * A run of lines that reflow together, or a single separator line between
+ * such runs that is left as it is.
+ */
+public class Paragraph {
+    // A Markdown list marker at the end of a line’s prefix, e.g., the ‘- ’ in
+    // ‘ *   - foo’. ‘*’ is left out so as not to mistake C comments for lists.
+    private static final Pattern RE_LIST_ITEM = Pattern.compile("(^|\\s)([-+]|\\d+[.)]) $");
+
+    private final List<String> _lines;
+    private final int _firstLine;
+    private final boolean _separator;
+
+    private Paragraph(List<String> lines, int firstLine, boolean separator) {
+        _lines = lines;
+        _firstLine = firstLine;
+        _separator = separator;
+    }
+
+    /**
+     * Split lines into paragraphs at blank or prefix-only lines, like ‘ *’ or
+     * ‘#’, and before Markdown list items and Javadoc block tags.
+     */
+    public static List<Paragraph> split(List<String> lines) {
+        List<Paragraph> ret = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (isSeparator(line)) {
+                if (start < i)
+                    ret.add(new Paragraph(lines.subList(start, i), start, false));
+                ret.add(new Paragraph(lines.subList(i, i + 1), i, true));
+                start = i + 1;
+            } else if (start < i && (startsListItem(line) || startsBlockTag(line))) {
+                ret.add(new Paragraph(lines.subList(start, i), start, false));
+                start = i;
+            }
+        }
+        if (start < lines.size())
+            ret.add(new Paragraph(lines.subList(start, lines.size()), start, false));
+        return ret;
+    }
+
+    /** Whether the line has no words, only whitespace and punctuation. */
+    public static boolean isSeparator(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (Character.isLetterOrDigit(line.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    static boolean startsListItem(String line) {
+        return RE_LIST_ITEM.matcher(nonAlphabeticPrefix(line)).find();
+    }
+
+    /** Whether the line starts a Javadoc block tag, like ‘ * @param’ */
+    static boolean startsBlockTag(String line) {
+        return nonAlphabeticPrefix(line).endsWith("@");
+    }
+
+    /**
+     * The prefix that lines after one with the given prefix have when they
+     * belong to the same paragraph: the prefix itself, except that a list
+     * marker is replaced by spaces.
+     */
+    static String continuationPrefix(String prefix) {
+        Matcher m = RE_LIST_ITEM.matcher(prefix);
+        if (!m.find())
+            return prefix;
+        return prefix.substring(0, m.start(2))
+                + Strings.repeat(" ", prefix.length() - m.start(2));
+    }
+
+    public List<String> getLines() {
+        return _lines;
+    }
+
+    /** The index of this paragraph’s first line among the split lines */
+    public int getFirstLine() {
+        return _firstLine;
+    }
+
+    public boolean isSeparator() {
+        return _separator;
+    }
+}
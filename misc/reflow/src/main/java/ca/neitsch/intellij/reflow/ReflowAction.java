@@ -1,14 +1,25 @@
 package ca.neitsch.intellij.reflow;
 
+import com.intellij.openapi.progress.ProgressIndicator;
+
 public class ReflowAction
         extends LineSequenceAction
 {
+    private final LineBreaker _lineBreaker;
+
     public ReflowAction() {
-        super("Reflow Text");
+        this("Reflow Text", LineBreaker.GREEDY);
+    }
+
+    protected ReflowAction(String s, LineBreaker lineBreaker) {
+        super(s);
+        _lineBreaker = lineBreaker;
     }
 
     @Override
-    protected String transform(LineSequence ls) {
-        return new TextFlow().reflow(ls.getSelectedLines());
+    protected String transform(LineSequence ls, ProgressIndicator indicator) {
+        TextFlow f = new TextFlow(_lineBreaker, CodecExtensions.getRegistry());
+        f.setCancellationCheck(indicator::checkCanceled);
+        return f.reflow(ls.getSelectedLines());
     }
 }
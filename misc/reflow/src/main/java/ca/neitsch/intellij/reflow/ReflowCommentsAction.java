@@ -0,0 +1,213 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import com.intellij.concurrency.JobLauncher;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.application.WriteAction;
+import com.intellij.openapi.command.CommandProcessor;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiComment;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.DocumentUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reflows every comment in the selected files and directories, or in the
+ * whole project if nothing is selected.
+ *
+ * The comments are found by the language’s parser, and the reflowing is done
+ * in parallel, in read actions, in the background. Each changed file then
+ * gets one bulk update, as one undoable command.
+ *
+ * The parser’s offsets are only good for committed documents, so all of
+ * them are committed first, and any edited again before its turn comes is
+ * skipped.
+ */
+public class ReflowCommentsAction
+        extends AnAction
+{
+    private final String _title;
+    private final boolean _all;
+
+    /** Only reflows paragraphs that have a line that is too long */
+    public ReflowCommentsAction() {
+        this("Reflow Overlong Comments", false);
+    }
+
+    protected ReflowCommentsAction(String s, boolean all) {
+        super(s);
+        _title = s;
+        _all = all;
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        event.getPresentation().setEnabled(event.getProject() != null);
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        Project p = event.getProject();
+        if (p == null) {
+            return;
+        }
+        VirtualFile[] selected = event.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        if (selected == null || selected.length == 0) {
+            VirtualFile f = event.getData(CommonDataKeys.VIRTUAL_FILE);
+            selected = f == null ? null : new VirtualFile[] {f};
+        }
+        VirtualFile[] roots = selected;
+
+        PsiDocumentManager.getInstance(p).commitAllDocuments();
+        ProgressManager.getInstance().run(new Task.Backgroundable(p, _title, true) {
+            private final Queue<FileEdits> _results = new ConcurrentLinkedQueue<>();
+
+            @Override
+            public void run(ProgressIndicator indicator) {
+                indicator.setText("Finding files");
+                List<VirtualFile> files = ReadAction.compute(() -> collectFiles(p, roots));
+
+                indicator.setText("Reflowing comments");
+                CodecRegistry codecs = CodecExtensions.getRegistry();
+                JobLauncher.getInstance().invokeConcurrentlyUnderProgress(files, indicator, f -> {
+                    FileEdits edits = ReadAction.compute(() -> computeEdits(p, f, codecs));
+                    if (edits != null) {
+                        _results.add(edits);
+                    }
+                    return true;
+                });
+            }
+
+            @Override
+            public void onSuccess() {
+                int changed = 0;
+                for (FileEdits e: _results) {
+                    if (e.apply(p, _title)) {
+                        changed++;
+                    }
+                }
+                Messages.showInfoMessage(p,
+                        changed == 1 ? "Reflowed comments in 1 file"
+                                : "Reflowed comments in " + changed + " files",
+                        _title);
+            }
+        });
+    }
+
+    private static List<VirtualFile> collectFiles(Project p, VirtualFile[] roots) {
+        ProjectFileIndex index = ProjectFileIndex.getInstance(p);
+        List<VirtualFile> files = new ArrayList<>();
+        ContentIterator collect = f -> {
+            if (!f.isDirectory() && !f.getFileType().isBinary()) {
+                files.add(f);
+            }
+            return true;
+        };
+        if (roots == null) {
+            index.iterateContent(collect);
+        } else {
+            for (VirtualFile root: roots) {
+                index.iterateContentUnderDirectory(root, collect);
+            }
+        }
+        return files;
+    }
+
+    /** Run in a read action, possibly alongside others */
+    private FileEdits computeEdits(Project p, VirtualFile f, CodecRegistry codecs) {
+        if (!f.isValid()) {
+            return null;
+        }
+        // A file with no document loaded has no edits the PSI hasn’t seen.
+        Document cached = FileDocumentManager.getInstance().getCachedDocument(f);
+        if (cached != null && !PsiDocumentManager.getInstance(p).isCommitted(cached)) {
+            return null;
+        }
+        PsiFile psi = PsiManager.getInstance(p).findFile(f);
+        if (psi == null) {
+            return null;
+        }
+
+        Collection<PsiComment> comments = PsiTreeUtil.findChildrenOfType(psi, PsiComment.class);
+        if (comments.isEmpty()) {
+            return null;
+        }
+        // Only load the document now that there is something to reflow.
+        Document d = cached != null ? cached : FileDocumentManager.getInstance().getDocument(f);
+        if (d == null || !d.isWritable()) {
+            return null;
+        }
+        int[] starts = new int[comments.size()];
+        int[] ends = new int[comments.size()];
+        int i = 0;
+        for (PsiComment c: comments) {
+            TextRange r = c.getTextRange();
+            starts[i] = r.getStartOffset();
+            ends[i] = r.getEndOffset();
+            i++;
+        }
+
+        long stamp = d.getModificationStamp();
+        CommentReflower reflower = new CommentReflower(
+                new TextFlow(LineBreaker.GREEDY, codecs), codecs, _all);
+        List<TextEdit> edits = reflower.reflowComments(
+                d.getImmutableCharSequence(), starts, ends);
+        return edits.isEmpty() ? null : new FileEdits(d, stamp, edits);
+    }
+
+    private static class FileEdits {
+        private final Document _document;
+        private final long _stamp;
+        private final List<TextEdit> _edits;
+
+        FileEdits(Document document, long stamp, List<TextEdit> edits) {
+            _document = document;
+            _stamp = stamp;
+            _edits = edits;
+        }
+
+        /** Apply the edits, unless the document has changed since */
+        boolean apply(Project p, String title) {
+            if (_document.getModificationStamp() != _stamp) {
+                return false;
+            }
+            CommandProcessor.getInstance().executeCommand(p, () -> {
+                WriteAction.run(() -> DocumentUtil.executeInBulk(_document, true, () -> {
+                    // Back to front, so earlier offsets stay good.
+                    for (int i = _edits.size() - 1; i >= 0; i--) {
+                        TextEdit e = _edits.get(i);
+                        _document.replaceString(e.getStart(), e.getEnd(), e.getReplacement());
+                    }
+                }));
+            }, title, null);
+            return true;
+        }
+    }
+
+    public static class All extends ReflowCommentsAction {
+        public All() {
+            super("Reflow All Comments", true);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ca.neitsch.intellij.reflow;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+
+public class ReflowParagraphsAction
+        extends LineSequenceAction
+{
+    public ReflowParagraphsAction() {
+        super("Reflow Paragraphs");
+    }
+
+    @Override
+    protected String transform(LineSequence ls, ProgressIndicator indicator) {
+        TextFlow f = new TextFlow(LineBreaker.GREEDY, CodecExtensions.getRegistry());
+        f.setCancellationCheck(indicator::checkCanceled);
+        return f.reflowParagraphs(ls.getSelectedLines());
+    }
+}
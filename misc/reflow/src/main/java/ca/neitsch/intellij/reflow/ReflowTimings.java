@@ -0,0 +1,210 @@
+package ca.neitsch.intellij.reflow;
+
+import com.google.common.cache.CacheStats;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional timings of the phases of reflowing and sorting, for finding out
+ * where the time goes.
+ *
+ * Timings are off unless turned on, with the diagnostics action or with
+ * <tt>-Dca.neitsch.intellij.reflow.timings=true</tt>. When off, every probe
+ * is a call on {@link Record#NONE}, which doesn’t even read the clock.
+ *
+ * The most recent records are kept in a ring buffer, along with how often
+ * each codec type has been picked.
+ */
+public final class ReflowTimings {
+    public enum Phase {
+        /** Getting the text and the selections out of the document */
+        READ,
+        /** Splitting the selection into a {@link LineSequence} */
+        PARSE,
+        /** Picking a codec and stripping the comment markers */
+        DETECT,
+        /** Breaking the words into lines */
+        BREAK,
+        /** Putting the comment markers back with {@code Codec.apply} */
+        APPLY,
+        /** Sorting lines */
+        SORT,
+        /** Replacing the text in the document */
+        WRITE,
+    }
+
+    private static final int CAPACITY = 256;
+
+    private static volatile boolean _enabled =
+            Boolean.getBoolean("ca.neitsch.intellij.reflow.timings");
+
+    private static final ThreadLocal<Record> CURRENT = new ThreadLocal<>();
+
+    // Guarded by itself
+    private static final Record[] _ring = new Record[CAPACITY];
+    private static int _next;
+    private static long _total;
+
+    private static final Map<String, LongAdder> _codecHits = new ConcurrentHashMap<>();
+
+    private ReflowTimings() {
+    }
+
+    public static boolean isEnabled() {
+        return _enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        _enabled = enabled;
+    }
+
+    /**
+     * Start a record of one run of an action, or return {@link Record#NONE}
+     * if timings are off.
+     */
+    public static Record begin(String action) {
+        return _enabled ? new Record(action) : Record.NONE;
+    }
+
+    /** The record that the current thread is working on, or NONE */
+    public static Record current() {
+        if (!_enabled)
+            return Record.NONE;
+        Record r = CURRENT.get();
+        return r == null ? Record.NONE : r;
+    }
+
+    public static void countCodec(String name) {
+        if (_enabled)
+            _codecHits.computeIfAbsent(name, k -> new LongAdder()).increment();
+    }
+
+    /** The records kept, oldest first */
+    public static List<Record> recent() {
+        synchronized (_ring) {
+            List<Record> ret = new ArrayList<>(CAPACITY);
+            int count = (int)Math.min(_total, CAPACITY);
+            for (int i = 0; i < count; i++)
+                ret.add(_ring[(_next - count + i + CAPACITY) % CAPACITY]);
+            return ret;
+        }
+    }
+
+    /** How often each codec type has been picked, by name */
+    public static Map<String, Long> codecHits() {
+        Map<String, Long> ret = new TreeMap<>();
+        _codecHits.forEach((name, count) -> ret.put(name, count.sum()));
+        return ret;
+    }
+
+    public static void clear() {
+        synchronized (_ring) {
+            _next = 0;
+            _total = 0;
+        }
+        _codecHits.clear();
+    }
+
+    /** A plain-text table of the records, codec counts and cache stats */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-8s %-24s %9s %7s", "time", "action", "chars", "lines"));
+        for (Phase p: Phase.values())
+            sb.append(String.format(" %8s", p.name().toLowerCase(Locale.ROOT)));
+        sb.append("  (ms)\n");
+        for (Record r: recent())
+            sb.append(r).append('\n');
+
+        sb.append('\n');
+        codecHits().forEach((name, count) ->
+                sb.append(String.format("%-24s %9d\n", name, count)));
+
+        CacheStats cache = TextFlow.cacheStats();
+        sb.append(String.format("\nreflow cache: %d hits, %d misses, %d evicted\n",
+                cache.hitCount(), cache.missCount(), cache.evictionCount()));
+        return sb.toString();
+    }
+
+    private static void add(Record r) {
+        synchronized (_ring) {
+            _ring[_next] = r;
+            _next = (_next + 1) % CAPACITY;
+            _total++;
+        }
+    }
+
+    public static final class Record {
+        /** Used when timings are off; ignores everything */
+        public static final Record NONE = new Record(null);
+
+        private final String _action;
+        private final long _startMillis;
+        private final AtomicLongArray _nanos = new AtomicLongArray(Phase.values().length);
+        private volatile long _chars;
+        private volatile long _lines;
+
+        private Record(String action) {
+            _action = action;
+            _startMillis = action == null ? 0 : System.currentTimeMillis();
+        }
+
+        /** Return the time to pass to {@link #end} when the phase is done */
+        public long start() {
+            return this == NONE ? 0 : System.nanoTime();
+        }
+
+        /** Add the time since start to the phase; safe from any thread */
+        public void end(Phase phase, long start) {
+            if (this != NONE)
+                _nanos.addAndGet(phase.ordinal(), System.nanoTime() - start);
+        }
+
+        /** Count more text as worked on; from one thread at a time */
+        public void addSize(long chars, long lines) {
+            if (this != NONE) {
+                _chars += chars;
+                _lines += lines;
+            }
+        }
+
+        /** Make this the current thread’s record, until {@link #detach} */
+        public void attach() {
+            if (this != NONE)
+                CURRENT.set(this);
+        }
+
+        public void detach() {
+            if (this != NONE)
+                CURRENT.remove();
+        }
+
+        /** Keep the record, once the action is done */
+        public void finish() {
+            if (this != NONE)
+                add(this);
+        }
+
+        public long getNanos(Phase phase) {
+            return _nanos.get(phase.ordinal());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%-8s %-24.24s %9d %7d",
+                    new SimpleDateFormat("HH:mm:ss").format(new Date(_startMillis)),
+                    _action, _chars, _lines));
+            for (Phase p: Phase.values())
+                sb.append(String.format(" %8.2f", getNanos(p) / 1e6));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ca.neitsch.intellij.reflow;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.ToggleAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.ui.Messages;
+
+/**
+ * Shows the recent {@link ReflowTimings}, and writes them to the IDE log so
+ * that they can be attached to a bug report.
+ */
+public class ShowReflowTimingsAction
+        extends AnAction
+{
+    private static final Logger LOG = Logger.getInstance(ShowReflowTimingsAction.class);
+
+    public ShowReflowTimingsAction() {
+        super("Show Reflow Timings");
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        String report = ReflowTimings.report();
+        LOG.info("Reflow timings:\n" + report);
+        Messages.showInfoMessage(event.getProject(),
+                ReflowTimings.isEnabled() ? report
+                        : "Timings are off; turn on Record Reflow Timings.\n\n" + report,
+                "Reflow Timings");
+    }
+
+    /** Starts a fresh set of timings when turned on */
+    public static class Toggle
+            extends ToggleAction
+    {
+        public Toggle() {
+            super("Record Reflow Timings");
+        }
+
+        @Override
+        public boolean isSelected(AnActionEvent event) {
+            return ReflowTimings.isEnabled();
+        }
+
+        @Override
+        public void setSelected(AnActionEvent event, boolean state) {
+            if (state) {
+                ReflowTimings.clear();
+            }
+            ReflowTimings.setEnabled(state);
+        }
+    }
+}
@@ -1,19 +1,129 @@
 package ca.neitsch.intellij.reflow;
 
-import com.google.common.base.Joiner;
-import com.google.common.collect.Lists;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.ui.Messages;
 
-import java.util.List;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class SortAction extends LineSequenceAction {
+    private final Supplier<LineSorter> _sorter;
+
     public SortAction() {
-        super("Sort lines");
+        this("Sort lines", LineSorter::new);
+    }
+
+    protected SortAction(String s, Supplier<LineSorter> sorter) {
+        super(s);
+        _sorter = sorter;
     }
 
     @Override
-    protected String transform(LineSequence ls) {
-        List<String> lines = Lists.newArrayList(ls.getSelectedLines());
-        lines.sort(String::compareTo);
-        return Joiner.on("\n").join(lines) + "\n";
+    protected String transform(LineSequence ls, ProgressIndicator indicator) {
+        return sort(_sorter.get(), ls, indicator);
+    }
+
+    static String sort(LineSorter sorter, LineSequence ls,
+                       ProgressIndicator indicator)
+    {
+        ReflowTimings.Record timings = ReflowTimings.current();
+        long t = timings.start();
+        String[] lines = sorter.sort(ls.getSelectedLines(),
+                indicator::checkCanceled);
+        timings.end(ReflowTimings.Phase.SORT, t);
+
+        int length = 0;
+        for (String line: lines) {
+            length += line.length() + 1;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        for (String line: lines) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static class Natural extends SortAction {
+        public Natural() {
+            super("Sort Lines Naturally",
+                    () -> new LineSorter(LineSorter.Order.NATURAL));
+        }
+    }
+
+    public static class IgnoringCase extends SortAction {
+        public IgnoringCase() {
+            super("Sort Lines Ignoring Case", () -> {
+                LineSorter s = new LineSorter();
+                s.setIgnoreCase(true);
+                return s;
+            });
+        }
+    }
+
+    public static class ByLocale extends SortAction {
+        public ByLocale() {
+            super("Sort Lines by Locale",
+                    () -> new LineSorter(LineSorter.Order.LOCALE));
+        }
+    }
+
+    public static class Reverse extends SortAction {
+        public Reverse() {
+            super("Sort Lines in Reverse", () -> {
+                LineSorter s = new LineSorter();
+                s.setReverse(true);
+                return s;
+            });
+        }
+    }
+
+    public static class Unique extends SortAction {
+        public Unique() {
+            super("Sort Unique Lines", () -> {
+                LineSorter s = new LineSorter();
+                s.setUnique(true);
+                return s;
+            });
+        }
+    }
+
+    /**
+     * Asks for a field number, like ‘2’, or a column, like ‘c12’, and sorts
+     * naturally by the rest of each line from there.
+     */
+    public static class ByKey extends SortAction {
+        private static final Pattern KEY = Pattern.compile("\\s*(c?)(\\d{1,6})\\s*");
+
+        public ByKey() {
+            super("Sort Lines by Field", () -> new LineSorter(LineSorter.Order.NATURAL));
+        }
+
+        @Override
+        protected Transform prepare(AnActionEvent event) {
+            String input = Messages.showInputDialog(event.getProject(),
+                    "Sort by field number (e.g., 2) or column (e.g., c12):",
+                    "Sort Lines by Field", null);
+            if (input == null) {
+                return null;
+            }
+            Matcher m = KEY.matcher(input);
+            if (!m.matches()) {
+                Messages.showErrorDialog(event.getProject(),
+                        "Not a field number or column: " + input,
+                        "Sort Lines by Field");
+                return null;
+            }
+
+            LineSorter sorter = new LineSorter(LineSorter.Order.NATURAL);
+            int n = Integer.parseInt(m.group(2));
+            if (m.group(1).isEmpty()) {
+                sorter.setField(n);
+            } else {
+                sorter.setColumn(n);
+            }
+            return (ls, indicator) -> sort(sorter, ls, indicator);
+        }
     }
 }
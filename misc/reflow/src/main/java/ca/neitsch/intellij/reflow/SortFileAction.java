@@ -0,0 +1,91 @@
+package ca.neitsch.intellij.reflow;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Sorts a whole file on disk, with bounded memory, so that it works on files
+ * too big to open in an editor.
+ */
+public class SortFileAction
+        extends AnAction
+{
+    private static final String TITLE = "Sort File";
+
+    public SortFileAction() {
+        super("Sort File...");
+    }
+
+    @Override
+    public void update(AnActionEvent event) {
+        VirtualFile f = event.getData(CommonDataKeys.VIRTUAL_FILE);
+        event.getPresentation().setEnabled(f != null && !f.isDirectory()
+                && f.isInLocalFileSystem());
+    }
+
+    @Override
+    public void actionPerformed(AnActionEvent event) {
+        Project p = event.getProject();
+        VirtualFile f = event.getData(CommonDataKeys.VIRTUAL_FILE);
+        if (f == null || f.isDirectory() || !f.isInLocalFileSystem()) {
+            return;
+        }
+
+        String options = Messages.showInputDialog(p,
+                "Sort options (e.g., -V -u -k 2), or none:", TITLE, null);
+        if (options == null) {
+            return;
+        }
+        LineSorter sorter;
+        try {
+            sorter = LineSorter.fromOptions(Splitter.on(CharMatcher.whitespace())
+                    .omitEmptyStrings().splitToList(options));
+        } catch (IllegalArgumentException e) {
+            Messages.showErrorDialog(p, e.getMessage(), TITLE);
+            return;
+        }
+
+        // What gets sorted is what’s on disk.
+        FileDocumentManager fdm = FileDocumentManager.getInstance();
+        Document d = fdm.getCachedDocument(f);
+        if (d != null) {
+            fdm.saveDocument(d);
+        }
+
+        Path path = f.toNioPath();
+        ProgressManager.getInstance().run(
+                new Task.Backgroundable(p, "Sorting " + f.getName(), true) {
+            @Override
+            public void run(ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                ExternalSorter s = new ExternalSorter(sorter);
+                s.setCancellationCheck(indicator::checkCanceled);
+                try {
+                    s.sort(path, path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                f.refresh(true, false);
+            }
+        });
+    }
+}
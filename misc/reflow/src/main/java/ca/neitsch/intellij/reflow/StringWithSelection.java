@@ -1,6 +1,8 @@
 package ca.neitsch.intellij.reflow;
 
 public interface StringWithSelection {
+    /** The underlying text, which is not copied. */
+    CharSequence getText();
     String getString();
     int getStartPos();
     int getEndPos();
@@ -0,0 +1,79 @@
+package ca.neitsch.intellij.reflow;
+
+/**
+ * A replacement of the text between two offsets.
+ */
+public class TextEdit {
+    private final int _start;
+    private final int _end;
+    private final String _replacement;
+
+    public TextEdit(int start, int end, String replacement) {
+        _start = start;
+        _end = end;
+        _replacement = replacement;
+    }
+
+    /**
+     * The smallest edit that turns the text between start and end into the
+     * replacement, found by trimming their common prefix and suffix; or null
+     * if they are already the same.
+     */
+    public static TextEdit minimal(CharSequence text, int start, int end,
+                                   String replacement)
+    {
+        int oldLength = end - start;
+        int newLength = replacement.length();
+        int limit = Math.min(oldLength, newLength);
+
+        int prefix = 0;
+        while (prefix < limit
+                && text.charAt(start + prefix) == replacement.charAt(prefix))
+            prefix++;
+
+        if (prefix == oldLength && prefix == newLength)
+            return null;
+
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && text.charAt(end - 1 - suffix)
+                    == replacement.charAt(newLength - 1 - suffix))
+            suffix++;
+
+        // Don’t split a surrogate pair.
+        if (prefix > 0 && Character.isHighSurrogate(replacement.charAt(prefix - 1)))
+            prefix--;
+        if (suffix > 0 && Character.isLowSurrogate(
+                replacement.charAt(newLength - suffix)))
+            suffix--;
+
+        return new TextEdit(start + prefix, end - suffix,
+                replacement.substring(prefix, newLength - suffix));
+    }
+
+    public int getStart() {
+        return _start;
+    }
+
+    public int getEnd() {
+        return _end;
+    }
+
+    public String getReplacement() {
+        return _replacement;
+    }
+
+    /** Apply this edit to a copy of the text. */
+    public String applyTo(CharSequence text) {
+        return new StringBuilder(text.length() + _replacement.length())
+                .append(text, 0, _start)
+                .append(_replacement)
+                .append(text, _end, text.length())
+                .toString();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d) -> %s", _start, _end, _replacement);
+    }
+}
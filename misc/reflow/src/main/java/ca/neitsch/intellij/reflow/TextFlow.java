@@ -1,14 +1,77 @@
 package ca.neitsch.intellij.reflow;
 
-import ca.neitsch.intellij.reflow.blockcomment.CComment;
 import ca.neitsch.intellij.reflow.blockcomment.Codec;
-import ca.neitsch.intellij.reflow.blockcomment.CommonPrefix;
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import ca.neitsch.intellij.reflow.blockcomment.CodecType;
 import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TextFlow {
+    /** The column at which text is wrapped */
+    public static final int WIDTH = 80;
+
+    /** Below this many lines, reflowing paragraphs in parallel isn’t worth it */
+    private static final int PARALLEL_MIN_LINES = 1000;
+
+    /** The most characters, of input and output, that the cache holds */
+    private static final long CACHE_MAX_CHARS = 4L << 20;
+
+    /**
+     * Recent results, shared by all instances, since the actions make a new
+     * one each time. With the line breakers in {@link #IDEMPOTENT}, each
+     * result is also cached as the result of reflowing itself, so a block
+     * that was just reflowed is a hit, and comes back untouched, the next
+     * time around.
+     */
+    private static final Cache<CacheKey, String> CACHE = CacheBuilder.newBuilder()
+            .maximumWeight(CACHE_MAX_CHARS)
+            .weigher((CacheKey k, String v) -> k._chars + v.length())
+            .recordStats()
+            .build();
+
+    /**
+     * Line breakers that give back their own output unchanged. The
+     * hyphenating one doesn’t: it rejoins the words it split, and may split
+     * them elsewhere.
+     */
+    private static final Set<LineBreaker> IDEMPOTENT =
+            ImmutableSet.of(LineBreaker.GREEDY, LineBreaker.OPTIMAL);
+
+    private final LineBreaker _lineBreaker;
+    private final CodecRegistry _codecs;
+    private Runnable _checkCanceled = () -> {};
+
+    public TextFlow() {
+        this(LineBreaker.GREEDY);
+    }
+
+    public TextFlow(LineBreaker lineBreaker) {
+        this(lineBreaker, CodecRegistry.DEFAULT);
+    }
+
+    public TextFlow(LineBreaker lineBreaker, CodecRegistry codecs) {
+        _lineBreaker = lineBreaker;
+        _codecs = codecs;
+    }
+
+    /**
+     * Set a callback that is run between units of work, and which may throw to
+     * abandon the reflow. It must be safe to call from any thread.
+     */
+    public void setCancellationCheck(Runnable checkCanceled) {
+        _checkCanceled = checkCanceled;
+    }
 
     /**
      * Return the reflowed text with which to replace the substring of
@@ -19,7 +82,14 @@ public class TextFlow {
      * @return The reflowed text, containing newlines including a trailing
      *         newline.
      */
-    String reflow(List<String> lines) {
+    public String reflow(List<String> lines) {
+        return reflow(lines, ReflowTimings.current());
+    }
+
+    private String reflow(List<String> lines, ReflowTimings.Record timings) {
+        _checkCanceled.run();
+        // Copy the lines out once here, so that the codecs needn’t.
+        lines = ImmutableList.copyOf(lines);
         for (String s: lines) {
           if (s.endsWith("\n")) {
             throw new IllegalArgumentException(
@@ -27,34 +97,122 @@ public class TextFlow {
           }
         }
 
-        Codec blockCommentCodec = null;
-        for (Codec c: new Codec[]{
-                new CComment(),
-                new CommonPrefix(),
-        }) {
-            c.setBlockToBeDecoded(lines);
-            if (c.detect()) {
-                blockCommentCodec = c;
-                break;
-            }
-        }
-        if (blockCommentCodec == null) {
+        CacheKey key = new CacheKey(lines, WIDTH, _lineBreaker, _codecs);
+        String cached = CACHE.getIfPresent(key);
+        if (cached != null)
+            return cached;
+
+        long t = timings.start();
+        CodecType type = _codecs.classify(lines);
+        Codec blockCommentCodec = type.create(lines);
+        if (!blockCommentCodec.detect()) {
             throw new RuntimeException("No block comment codec found");
         }
+        List<String> contents = blockCommentCodec.innerContents();
+        int width = WIDTH - blockCommentCodec.getWrapWidth();
+        timings.end(ReflowTimings.Phase.DETECT, t);
+        ReflowTimings.countCodec(type.getName());
 
-        StringBuilder sb = new StringBuilder();
-        for (String s: blockCommentCodec.innerContents()) {
-            sb.append(" ").append(s);
-        }
+        t = timings.start();
         List<String> balanced = Arrays.asList(
-                balance(sb.toString(), 80 - blockCommentCodec.getWrapWidth())
-                .split("\n"));
+                _lineBreaker.flow(contents, width).split("\n"));
+        timings.end(ReflowTimings.Phase.BREAK, t);
+
+        t = timings.start();
+        String ret = Joiner.on("\n").join(blockCommentCodec.apply(balanced)) + "\n";
+        timings.end(ReflowTimings.Phase.APPLY, t);
+
+        CACHE.put(key, ret);
+        if (IDEMPOTENT.contains(_lineBreaker)) {
+            List<String> reflowed = Splitter.on('\n').splitToList(
+                    ret.substring(0, ret.length() - 1));
+            if (!reflowed.equals(lines))
+                CACHE.put(new CacheKey(reflowed, WIDTH, _lineBreaker, _codecs), ret);
+        }
+        return ret;
+    }
+
+    /** Hit and miss counts of the cache of results */
+    public static CacheStats cacheStats() {
+        return CACHE.stats();
+    }
 
-        return Joiner.on("\n").join(blockCommentCodec.apply(balanced)) + "\n";
+    static void clearCache() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Like {@link #reflow(List)}, but split the lines into paragraphs first,
+     * and reflow each one separately, with its own codec. Separator lines
+     * between paragraphs are kept as they are. Large inputs are reflowed in
+     * parallel on the common fork-join pool.
+     */
+    public String reflowParagraphs(List<String> lines) {
+        lines = ImmutableList.copyOf(lines);
+        List<Paragraph> paragraphs = Paragraph.split(lines);
+        // The worker threads don’t know which record they’re working on.
+        ReflowTimings.Record timings = ReflowTimings.current();
+
+        Stream<Paragraph> stream = paragraphs.stream();
+        if (paragraphs.size() > 1 && lines.size() >= PARALLEL_MIN_LINES)
+            stream = stream.parallel();
+
+        return stream
+                .map(p -> p.isSeparator()
+                        ? p.getLines().get(0) + "\n"
+                        : reflow(p.getLines(), timings))
+                .collect(Collectors.joining());
     }
 
     /** Reflow prefix-less string S to at most l characters */
     public String balance(String s, int maxWidth) {
-        return new GreedyTextFlow(s, maxWidth).getFlowed();
+        return _lineBreaker.flow(s, maxWidth);
+    }
+
+    private static final class CacheKey {
+        private final List<String> _lines;
+        private final int _width;
+        private final LineBreaker _lineBreaker;
+        private final CodecRegistry _codecs;
+        private final int _hash;
+        private final int _chars;
+
+        CacheKey(List<String> lines, int width, LineBreaker lineBreaker,
+                 CodecRegistry codecs)
+        {
+            _lines = lines;
+            _width = width;
+            _lineBreaker = lineBreaker;
+            _codecs = codecs;
+
+            int hash = width;
+            int chars = 0;
+            for (String line: lines) {
+                hash = 31 * hash + line.hashCode();
+                chars += line.length() + 1;
+            }
+            _hash = 31 * (31 * hash + System.identityHashCode(lineBreaker))
+                    + System.identityHashCode(codecs);
+            _chars = chars;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CacheKey))
+                return false;
+            CacheKey k = (CacheKey)o;
+            // The hash is cheap to compare, and rules out nearly every miss
+            // before the lines are compared.
+            return _hash == k._hash
+                    && _width == k._width
+                    && _lineBreaker == k._lineBreaker
+                    && _codecs == k._codecs
+                    && _lines.equals(k._lines);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
     }
 }
@@ -0,0 +1,151 @@
+package ca.neitsch.intellij.reflow;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Finds the whitespace-separated words in a sequence of lines, in one pass,
+ * without copying them.
+ *
+ * The end of each line counts as whitespace. After {@link #next()} returns
+ * true, the current word is the range from {@link #start()} to {@link #end()}
+ * of {@link #line()}.
+ *
+ * Unless told otherwise, words are also split wherever {@link LineBreakClass}
+ * allows a break without a space, as between Chinese or Japanese characters.
+ * The pieces come back as words of their own, for which
+ * {@link #spaceBefore()} is false, so that the engines can put them back
+ * together without a space when they end up on the same line.
+ */
+public class WordScanner {
+    private final Iterator<? extends CharSequence> _lines;
+    private final boolean _unicodeBreaks;
+
+    private CharSequence _line;
+    private int _lineIndex = -1;
+    private int _pos;
+    // The end of the whitespace-separated word that the current piece is in
+    private int _wordEnd;
+
+    private int _start;
+    private int _end;
+    private boolean _spaceBefore;
+    // The last code point of the previous word, or -1 if there wasn’t one
+    private int _last = -1;
+
+    public WordScanner(List<? extends CharSequence> lines) {
+        this(lines, true);
+    }
+
+    /**
+     * @param unicodeBreaks Whether to split words where Unicode allows a
+     *                      break without a space, or only at whitespace
+     */
+    public WordScanner(List<? extends CharSequence> lines, boolean unicodeBreaks) {
+        _lines = lines.iterator();
+        _unicodeBreaks = unicodeBreaks;
+    }
+
+    /** Advance to the next word, returning false if there are no more. */
+    public boolean next() {
+        if (_end > _start)
+            _last = Character.codePointBefore(_line, _end);
+
+        if (_pos < _wordEnd) {
+            _start = _pos;
+            _end = _pos = LineBreakClass.nextBreak(_line, _start, _wordEnd);
+            _spaceBefore = false;
+            return true;
+        }
+
+        // Whether only line ends come between this word and the last
+        boolean lineEndsOnly = true;
+        while (true) {
+            if (_line != null) {
+                int length = _line.length();
+                int blank = _pos;
+                while (_pos < length && isWhitespace(_line.charAt(_pos)))
+                    _pos++;
+                lineEndsOnly &= _pos == blank;
+                if (_pos < length) {
+                    _start = _pos;
+                    char nonAscii = 0;
+                    char c;
+                    while (_pos < length && !isWhitespace(c = _line.charAt(_pos))) {
+                        nonAscii |= c & 0xFF80;
+                        _pos++;
+                    }
+                    _wordEnd = _pos;
+                    _spaceBefore = !(_unicodeBreaks && lineEndsOnly && _last >= 0
+                            && LineBreakClass.joinsWithoutSpace(
+                                    _last, Character.codePointAt(_line, _start)));
+                    if (_unicodeBreaks && nonAscii != 0)
+                        _pos = LineBreakClass.nextBreak(_line, _start, _wordEnd);
+                    _end = _pos;
+                    return true;
+                }
+            }
+            if (!_lines.hasNext()) {
+                _start = _end = 0;
+                return false;
+            }
+            _line = _lines.next();
+            _lineIndex++;
+            _pos = 0;
+            _wordEnd = 0;
+        }
+    }
+
+    public CharSequence line() {
+        return _line;
+    }
+
+    /** The index of the current word’s line */
+    public int lineIndex() {
+        return _lineIndex;
+    }
+
+    public int start() {
+        return _start;
+    }
+
+    public int end() {
+        return _end;
+    }
+
+    /**
+     * Whether whitespace came before the current word, rather than a break
+     * within a word; false for the pieces after the first of a word split by
+     * Unicode’s rules, and for Chinese or Japanese text continued on the
+     * next line.
+     */
+    public boolean spaceBefore() {
+        return _spaceBefore;
+    }
+
+    public int length() {
+        return _end - _start;
+    }
+
+    /** The display width of the current word, in columns */
+    public int width() {
+        return DisplayWidth.width(_line, _start, _end);
+    }
+
+    public void appendTo(StringBuilder sb) {
+        sb.append(_line, _start, _end);
+    }
+
+    /** The characters matched by <tt>\s</tt> in a regular expression */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /** An upper bound on the length of the text once its words are reflowed */
+    static int flowedLengthBound(List<? extends CharSequence> lines) {
+        int total = 0;
+        for (CharSequence line: lines)
+            total += line.length() + 1;
+        return total;
+    }
+}
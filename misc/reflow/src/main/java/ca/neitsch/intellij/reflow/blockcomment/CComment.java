@@ -14,10 +14,27 @@ public class CComment
     private static final Pattern INITIAL_C_COMMENT = Pattern.compile("^(\\s*)/\\*");
     private static final Pattern SUBSEQUENT_C_COMMENT = Pattern.compile("^(\\s*)\\*");
 
+    private final Pattern _initial;
+    private final String _opener;
+
     private List<String> _lines;
     private List<String> _strippedLines;
     private int _width;
 
+    public CComment() {
+        this(INITIAL_C_COMMENT, "/*");
+    }
+
+    /**
+     * @param initial Matches the opening delimiter of the first line, with
+     *         the indentation before it as group 1
+     * @param opener The opening delimiter to put back on the first line
+     */
+    protected CComment(Pattern initial, String opener) {
+        _initial = initial;
+        _opener = opener;
+    }
+
     @Override
     public void setBlockToBeDecoded(List<String> lines) {
         _lines = ImmutableList.copyOf(lines);
@@ -43,10 +60,12 @@ public class CComment
 
     @Override
     public List<String> apply(List<String> modifiedLines) {
-        List<String> ret = Lists.newArrayList();
-        ret.add(Strings.repeat(" ", _width) + "/* " + modifiedLines.get(0));
+        List<String> ret = Lists.newArrayListWithCapacity(modifiedLines.size());
+        String indent = Strings.repeat(" ", _width);
+        ret.add(indent + _opener + " " + modifiedLines.get(0));
+        String continuation = indent + " * ";
         for (int i = 1; i < modifiedLines.size(); i++) {
-            ret.add(Strings.repeat(" ", _width) + " * " + modifiedLines.get(i));
+            ret.add(continuation + modifiedLines.get(i));
         }
         return ret;
     }
@@ -65,7 +84,7 @@ public class CComment
 
         _strippedLines = Lists.newArrayList();
 
-        if (!pruneLineAndAdd(INITIAL_C_COMMENT, 0)) {
+        if (!pruneLineAndAdd(_initial, 0)) {
             clear();
             return;
         }
@@ -89,4 +108,30 @@ public class CComment
 
         return true;
     }
+
+    public static class Type
+        implements CodecType
+    {
+        @Override
+        public String getName() {
+            return "C comment";
+        }
+
+        @Override
+        public boolean acceptsLine(String line, int index) {
+            return CodecRegistry.startsAfterWhitespace(line, index == 0 ? "/*" : "*");
+        }
+
+        @Override
+        public boolean endsBlock(String line, int index) {
+            return line.contains("*/");
+        }
+
+        @Override
+        public Codec create(List<String> lines) {
+            Codec c = new CComment();
+            c.setBlockToBeDecoded(lines);
+            return c;
+        }
+    }
 }
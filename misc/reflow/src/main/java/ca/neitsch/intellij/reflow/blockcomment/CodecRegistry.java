@@ -0,0 +1,88 @@
+package ca.neitsch.intellij.reflow.blockcomment;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Picks the codec for a block of lines out of a fixed set of codec types.
+ *
+ * All of the types are tried together in one pass over the lines; each type
+ * drops out at the first line it rejects, and the pass stops once every type
+ * has, so in practice most types cost a glance at the first line. When no
+ * type accepts every line, the {@link CommonPrefix} codec, which always
+ * applies, is used.
+ */
+public class CodecRegistry {
+    public static final CodecRegistry DEFAULT = new CodecRegistry(ImmutableList.of(
+            new JavadocComment.Type(),
+            new CComment.Type(),
+            new PythonDocstring.Type(),
+            new LineComment.DoubleSlash(),
+            new LineComment.Hash(),
+            new LineComment.DoubleDash()));
+
+    private static final CodecType FALLBACK = new CommonPrefix.Type();
+
+    private final CodecType[] _types;
+
+    /**
+     * @param types The codec types to try, in order of preference
+     */
+    public CodecRegistry(List<? extends CodecType> types) {
+        _types = types.toArray(new CodecType[0]);
+    }
+
+    /**
+     * Return the first type that accepts all of the lines, or the common
+     * prefix type if none do.
+     */
+    public CodecType classify(List<String> lines) {
+        boolean[] rejected = new boolean[_types.length];
+        int remaining = _types.length;
+
+        for (int i = 0; i < lines.size() && remaining > 0; i++) {
+            String line = lines.get(i);
+            for (int t = 0; t < _types.length; t++) {
+                if (!rejected[t] && !_types[t].acceptsLine(line, i)) {
+                    rejected[t] = true;
+                    remaining--;
+                }
+            }
+        }
+
+        for (int t = 0; t < _types.length; t++) {
+            if (!rejected[t])
+                return _types[t];
+        }
+        return FALLBACK;
+    }
+
+    /** Return a codec for the lines. */
+    public Codec detect(List<String> lines) {
+        return classify(lines).create(lines);
+    }
+
+    /** Whether the type is the catch-all used when nothing else matches */
+    public static boolean isFallback(CodecType type) {
+        return type == FALLBACK;
+    }
+
+    /** Return the index of the first non-whitespace character of s. */
+    static int skipWhitespace(CharSequence s) {
+        int i = 0;
+        while (i < s.length() && isWhitespace(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    /** Whether s has the given delimiter after any leading whitespace */
+    static boolean startsAfterWhitespace(String s, String delimiter) {
+        return s.startsWith(delimiter, skipWhitespace(s));
+    }
+
+    /** The characters matched by <tt>\s</tt> in a regular expression */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+}
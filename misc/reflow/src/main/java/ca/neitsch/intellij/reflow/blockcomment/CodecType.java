@@ -0,0 +1,38 @@
+package ca.neitsch.intellij.reflow.blockcomment;
+
+import java.util.List;
+
+/**
+ * A kind of block comment, which knows how to recognize its lines and create
+ * a {@link Codec} for them.
+ *
+ * Unlike codecs, implementations are stateless, so a single instance can be
+ * shared by every reflow, on any thread. Plugins may register more of these
+ * with the <tt>ca.neitsch.intellij.reflow.codec</tt> extension point.
+ */
+public interface CodecType {
+    /** A short human-readable name, e.g., ‘C comment’ */
+    String getName();
+
+    /**
+     * Return whether the line could be the index’th line of a block of this
+     * type. This is called for each line in turn, until it returns false, so
+     * it should be cheap: look at the start of the line, not all of it.
+     */
+    boolean acceptsLine(String line, int index);
+
+    /**
+     * Return whether the line, the index’th of a block of this type, is its
+     * last, e.g., because it has a closing delimiter. This is used to find
+     * where blocks end when scanning whole files.
+     */
+    default boolean endsBlock(String line, int index) {
+        return false;
+    }
+
+    /**
+     * Create a codec for lines that were all accepted by
+     * {@link #acceptsLine(String, int)}.
+     */
+    Codec create(List<String> lines);
+}
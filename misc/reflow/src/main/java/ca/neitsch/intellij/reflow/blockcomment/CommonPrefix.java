@@ -1,5 +1,6 @@
 package ca.neitsch.intellij.reflow.blockcomment;
 
+import ca.neitsch.intellij.reflow.DisplayWidth;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Streams;
 
@@ -10,8 +11,6 @@ import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static com.google.common.base.Strings.commonPrefix;
-
 public class CommonPrefix
     implements Codec
 {
@@ -21,6 +20,7 @@ public class CommonPrefix
     private String _prefix;
     private boolean _addSpace = false;
     private boolean _isMarkdownBullet = false;
+    private int _wrapWidth;
 
     public static String nonAlphabeticPrefix(String s) {
         Matcher m = RE_NON_ALPHA.matcher(s);
@@ -47,12 +47,9 @@ public class CommonPrefix
     public List<String> innerContents() {
         computePrefix();
 
-        List<String> ret = new ArrayList<>();
+        List<String> ret = new ArrayList<>(_lines.size());
         for (String line: _lines) {
-            if (_isMarkdownBullet
-                    && (line.startsWith(_prefix + "  ")
-                        || line.startsWith(_prefix + "- ")))
-            {
+            if (_isMarkdownBullet && lineIsPartOfMarkdownList(line)) {
                 ret.add(line.substring(_prefix.length() + 2));
             } else {
                 ret.add(line.substring(_prefix.length()));
@@ -62,13 +59,21 @@ public class CommonPrefix
     }
 
     private boolean lineIsPartOfMarkdownList(String line) {
-        return line.startsWith(_prefix + "- ") || line.startsWith(_prefix + "  ");
+        return startsWithPrefixAnd(line, "- ") || startsWithPrefixAnd(line, "  ");
+    }
+
+    /**
+     * Like <tt>line.startsWith(_prefix + s)</tt>, without building a string
+     * for every line
+     */
+    private boolean startsWithPrefixAnd(String line, String s) {
+        return line.startsWith(_prefix) && line.startsWith(s, _prefix.length());
     }
 
     @Override
     public List<String> apply(List<String> modifiedLines) {
 
-        List<String> ret = new ArrayList<>();
+        List<String> ret = new ArrayList<>(modifiedLines.size());
 
         boolean first = true;
         for (String s: modifiedLines) {
@@ -91,16 +96,7 @@ public class CommonPrefix
     @Override
     public int getWrapWidth() {
         computePrefix();
-
-        var tabCount = _prefix.codePoints()
-                .filter(i -> i == Character.valueOf('\t'))
-                .count();
-
-        return _prefix.length()
-                // 7 because each 8-char tab already counted as taking 1 space
-                + 7 * (int)tabCount
-                // for markdown bullet lists, we add back two chars later
-                + (_isMarkdownBullet ? 2 : 0);
+        return _wrapWidth;
     }
 
     /** Identify a common prefix, e.g., a comment delimiter */
@@ -109,14 +105,28 @@ public class CommonPrefix
             return;
 
         if (_lines.size() > 1) {
-            _prefix = _lines.get(0);
+            String first = _lines.get(0);
+            int length = first.length();
             for (String s: _lines) {
-                _prefix = commonPrefix(_prefix, s);
+                int i = 0;
+                int max = Math.min(length, s.length());
+                while (i < max && s.charAt(i) == first.charAt(i))
+                    i++;
+                length = i;
+            }
+            // Don’t split a surrogate pair, as Strings.commonPrefix wouldn’t
+            if (length > 0 && length < first.length()
+                    && Character.isHighSurrogate(first.charAt(length - 1)))
+            {
+                length--;
             }
-            _prefix = nonAlphabeticPrefix(_prefix);
+            _prefix = nonAlphabeticPrefix(first.substring(0, length));
         } else {
             _prefix = nonAlphabeticPrefix(_lines.get(0));
         }
+        // The ‘@’ of a Javadoc block tag is part of the tag.
+        if (_prefix.endsWith("@"))
+            _prefix = _prefix.substring(0, _prefix.length() - 1);
 
         // The common prefix may have an optional space that isn’t detected
         // because blank lines omit it.
@@ -124,7 +134,7 @@ public class CommonPrefix
         // ^ like this
         _addSpace = true;
         for (String s: _lines) {
-            if (s.length() > _prefix.length() && !s.startsWith(_prefix + " "))
+            if (s.length() > _prefix.length() && !startsWithPrefixAnd(s, " "))
                 _addSpace = false;
         }
 
@@ -135,5 +145,30 @@ public class CommonPrefix
                 && _lines.stream().allMatch(this::lineIsPartOfMarkdownList)) {
             _isMarkdownBullet = true;
         }
+
+        _wrapWidth = DisplayWidth.columns(_prefix)
+                // for markdown bullet lists, we add back two chars later
+                + (_isMarkdownBullet ? 2 : 0);
+    }
+
+    public static class Type
+        implements CodecType
+    {
+        @Override
+        public String getName() {
+            return "common prefix";
+        }
+
+        @Override
+        public boolean acceptsLine(String line, int index) {
+            return true;
+        }
+
+        @Override
+        public Codec create(List<String> lines) {
+            Codec c = new CommonPrefix();
+            c.setBlockToBeDecoded(lines);
+            return c;
+        }
     }
 }
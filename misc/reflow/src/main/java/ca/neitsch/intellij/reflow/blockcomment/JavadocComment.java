@@ -0,0 +1,44 @@
+package ca.neitsch.intellij.reflow.blockcomment;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A C comment that opens with ‘/**’, which is kept as it is instead of the
+ * second ‘*’ being taken for text.
+ */
+public class JavadocComment
+    extends CComment
+{
+    private static final Pattern INITIAL_JAVADOC = Pattern.compile("^(\\s*)/\\*\\*");
+
+    public JavadocComment() {
+        super(INITIAL_JAVADOC, "/**");
+    }
+
+    public static class Type
+        implements CodecType
+    {
+        @Override
+        public String getName() {
+            return "Javadoc comment";
+        }
+
+        @Override
+        public boolean acceptsLine(String line, int index) {
+            return CodecRegistry.startsAfterWhitespace(line, index == 0 ? "/**" : "*");
+        }
+
+        @Override
+        public boolean endsBlock(String line, int index) {
+            return line.contains("*/");
+        }
+
+        @Override
+        public Codec create(List<String> lines) {
+            Codec c = new JavadocComment();
+            c.setBlockToBeDecoded(lines);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ca.neitsch.intellij.reflow.blockcomment;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Comments where every line starts with the same delimiter, e.g., ‘//’.
+ *
+ * These are decoded by {@link CommonPrefix}, which already handles them well;
+ * having a type per delimiter lets the registry tell that the lines are a
+ * comment rather than arbitrary text with a common prefix.
+ */
+public abstract class LineComment
+    implements CodecType
+{
+    private final String _name;
+    private final String _delimiter;
+
+    protected LineComment(String name, String delimiter) {
+        _name = name;
+        _delimiter = delimiter;
+    }
+
+    @Override
+    public String getName() {
+        return _name;
+    }
+
+    @Override
+    public boolean acceptsLine(String line, int index) {
+        return CodecRegistry.startsAfterWhitespace(line, _delimiter);
+    }
+
+    @Override
+    public Codec create(List<String> lines) {
+        Codec c = new CommonPrefix();
+        c.setBlockToBeDecoded(lines);
+        return c;
+    }
+
+    public static class DoubleSlash
+        extends LineComment
+    {
+        public DoubleSlash() {
+            super("// comment", "//");
+        }
+    }
+
+    /**
+     * ‘#’ comments, but not ‘#!’ interpreter lines or C preprocessor
+     * directives like ‘#include’, which only look like them
+     */
+    public static class Hash
+        extends LineComment
+    {
+        private static final Set<String> DIRECTIVES = ImmutableSet.of(
+                "define", "elif", "else", "endif", "endregion", "error", "if",
+                "ifdef", "ifndef", "import", "include", "line", "pragma",
+                "region", "undef", "warning");
+
+        public Hash() {
+            super("# comment", "#");
+        }
+
+        @Override
+        public boolean acceptsLine(String line, int index) {
+            return super.acceptsLine(line, index) && !isDirective(line);
+        }
+
+        static boolean isDirective(String line) {
+            int start = CodecRegistry.skipWhitespace(line) + 1;
+            if (line.startsWith("!", start))
+                return true;
+            int end = start;
+            while (end < line.length() && Character.isLetterOrDigit(line.charAt(end)))
+                end++;
+            return DIRECTIVES.contains(line.substring(start, end));
+        }
+    }
+
+    public static class DoubleDash
+        extends LineComment
+    {
+        public DoubleDash() {
+            super("-- comment", "--");
+        }
+    }
+}
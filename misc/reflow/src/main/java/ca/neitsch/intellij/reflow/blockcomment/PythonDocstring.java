@@ -0,0 +1,137 @@
+package ca.neitsch.intellij.reflow.blockcomment;
+
+import ca.neitsch.intellij.reflow.DisplayWidth;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Python docstring, from its opening ‘"""’ (or ‘'''’) to its end:
+ *
+ * <pre>
+ *     """Lorem ipsum
+ *     dolor sit amet."""
+ * </pre>
+ *
+ * A closing delimiter at the end of the last line, or on a line of its own,
+ * is put back in the same place.
+ */
+public class PythonDocstring
+    implements Codec
+{
+    private List<String> _lines;
+    private List<String> _strippedLines;
+    private String _indent;
+    private String _quotes;
+    private boolean _closed;
+    private boolean _closedOnOwnLine;
+
+    @Override
+    public void setBlockToBeDecoded(List<String> lines) {
+        _lines = ImmutableList.copyOf(lines);
+        _strippedLines = null;
+    }
+
+    @Override
+    public boolean detect() {
+        check();
+        return _strippedLines != null;
+    }
+
+    @Override
+    public List<String> innerContents() {
+        check();
+        return _strippedLines;
+    }
+
+    @Override
+    public List<String> apply(List<String> modifiedLines) {
+        List<String> ret = new ArrayList<>();
+        for (int i = 0; i < modifiedLines.size(); i++) {
+            String s = modifiedLines.get(i);
+            if (i == 0)
+                s = _quotes + s;
+            if (_closed && !_closedOnOwnLine && i == modifiedLines.size() - 1)
+                s = s + _quotes;
+            ret.add(_indent + s);
+        }
+        if (_closedOnOwnLine)
+            ret.add(_indent + _quotes);
+        return ret;
+    }
+
+    @Override
+    public int getWrapWidth() {
+        check();
+        return DisplayWidth.columns(_indent) + _quotes.length();
+    }
+
+    private void check() {
+        if (_strippedLines != null || _lines.isEmpty())
+            return;
+
+        String first = _lines.get(0);
+        int start = CodecRegistry.skipWhitespace(first);
+        if (first.startsWith("\"\"\"", start)) {
+            _quotes = "\"\"\"";
+        } else if (first.startsWith("'''", start)) {
+            _quotes = "'''";
+        } else {
+            return;
+        }
+        _indent = first.substring(0, start);
+
+        List<String> stripped = new ArrayList<>();
+        stripped.add(first.substring(start + _quotes.length()));
+        for (int i = 1; i < _lines.size(); i++) {
+            String line = _lines.get(i);
+            stripped.add(line.substring(Math.min(
+                    CodecRegistry.skipWhitespace(line), _indent.length())));
+        }
+
+        int last = stripped.size() - 1;
+        String lastLine = stripped.get(last).trim();
+        _closedOnOwnLine = last > 0 && lastLine.equals(_quotes);
+        _closed = _closedOnOwnLine || lastLine.endsWith(_quotes);
+        if (_closedOnOwnLine) {
+            stripped.remove(last);
+        } else if (_closed) {
+            String s = stripped.get(last);
+            stripped.set(last, s.substring(0, s.lastIndexOf(_quotes)));
+        }
+        _strippedLines = stripped;
+    }
+
+    public static class Type
+        implements CodecType
+    {
+        @Override
+        public String getName() {
+            return "Python docstring";
+        }
+
+        @Override
+        public boolean acceptsLine(String line, int index) {
+            // Only the first line is marked; the rest are just indented.
+            return index != 0
+                    || CodecRegistry.startsAfterWhitespace(line, "\"\"\"")
+                    || CodecRegistry.startsAfterWhitespace(line, "'''");
+        }
+
+        @Override
+        public boolean endsBlock(String line, int index) {
+            String rest = line.trim();
+            if (index == 0)
+                rest = rest.substring(3);
+            return rest.contains("\"\"\"") || rest.contains("'''");
+        }
+
+        @Override
+        public Codec create(List<String> lines) {
+            Codec c = new PythonDocstring();
+            c.setBlockToBeDecoded(lines);
+            return c;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package ca.neitsch.intellij.reflow.cli;
+
+import ca.neitsch.intellij.reflow.CommentReflower;
+import ca.neitsch.intellij.reflow.LineBreaker;
+import ca.neitsch.intellij.reflow.TextEdit;
+import ca.neitsch.intellij.reflow.TextFlow;
+import ca.neitsch.intellij.reflow.blockcomment.CComment;
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import ca.neitsch.intellij.reflow.blockcomment.CodecType;
+import ca.neitsch.intellij.reflow.blockcomment.JavadocComment;
+import ca.neitsch.intellij.reflow.blockcomment.LineComment;
+import ca.neitsch.intellij.reflow.blockcomment.PythonDocstring;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reflow the comments in source files from the command line, e.g., in CI or
+ * a pre-commit hook. This uses nothing from the IntelliJ platform.
+ *
+ * <pre>
+ * usage: reflow [--check] [--all] [--even] PATH...
+ * </pre>
+ *
+ * Directories are walked for files with known source extensions, skipping
+ * hidden ones. Only the comment styles of each file’s language are looked
+ * for, so that, e.g., ‘#include’ in C or ‘--x’ in CSS is never mistaken for
+ * a comment. Files are read through memory maps and processed in parallel.
+ * Changed files are replaced atomically, keeping their line separators;
+ * with <tt>--check</tt>, nothing is written, a diff is printed instead, and
+ * the exit status is 1 if any file would change. A file that can’t be read
+ * or written is reported, and the rest are still processed, but the exit
+ * status is then 2.
+ */
+public class ReflowMain {
+    private static final CodecType JAVADOC = new JavadocComment.Type();
+    private static final CodecType C_COMMENT = new CComment.Type();
+    private static final CodecType DOCSTRING = new PythonDocstring.Type();
+    private static final CodecType DOUBLE_SLASH = new LineComment.DoubleSlash();
+    private static final CodecType HASH = new LineComment.Hash();
+    private static final CodecType DOUBLE_DASH = new LineComment.DoubleDash();
+
+    private static final List<CodecType> C_STYLE =
+            ImmutableList.of(JAVADOC, C_COMMENT, DOUBLE_SLASH);
+
+    /** The comment styles of each source file extension */
+    private static final Map<String, List<CodecType>> COMMENT_STYLES =
+            ImmutableMap.<String, List<CodecType>>builder()
+                    .put("c", C_STYLE)
+                    .put("cc", C_STYLE)
+                    .put("cpp", C_STYLE)
+                    .put("cs", C_STYLE)
+                    .put("css", ImmutableList.of(JAVADOC, C_COMMENT))
+                    .put("go", C_STYLE)
+                    .put("gradle", C_STYLE)
+                    .put("groovy", C_STYLE)
+                    .put("h", C_STYLE)
+                    .put("hpp", C_STYLE)
+                    .put("java", C_STYLE)
+                    .put("js", C_STYLE)
+                    .put("kt", C_STYLE)
+                    .put("kts", C_STYLE)
+                    .put("lua", ImmutableList.of(DOUBLE_DASH))
+                    .put("m", C_STYLE)
+                    .put("php", ImmutableList.of(JAVADOC, C_COMMENT, DOUBLE_SLASH, HASH))
+                    .put("pl", ImmutableList.of(HASH))
+                    .put("py", ImmutableList.of(DOCSTRING, HASH))
+                    .put("rb", ImmutableList.of(HASH))
+                    .put("rs", C_STYLE)
+                    .put("scala", C_STYLE)
+                    .put("sh", ImmutableList.of(HASH))
+                    .put("sql", ImmutableList.of(JAVADOC, C_COMMENT, DOUBLE_DASH))
+                    .put("swift", C_STYLE)
+                    .put("ts", C_STYLE)
+                    .build();
+
+    private final Map<String, CommentReflower> _reflowers = new HashMap<>();
+    private final boolean _check;
+    private final PrintStream _err;
+    private final AtomicBoolean _failed = new AtomicBoolean();
+
+    private ReflowMain(TextFlow flow, boolean all, boolean check, PrintStream err) {
+        COMMENT_STYLES.forEach((extension, types) -> _reflowers.put(extension,
+                new CommentReflower(flow, new CodecRegistry(types), all)));
+        _check = check;
+        _err = err;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /** Return the exit status */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        boolean check = false;
+        boolean all = false;
+        LineBreaker lineBreaker = LineBreaker.GREEDY;
+        List<Path> roots = new ArrayList<>();
+        for (String arg: args) {
+            switch (arg) {
+                case "--check":
+                    check = true;
+                    break;
+                case "--all":
+                    all = true;
+                    break;
+                case "--even":
+                    lineBreaker = LineBreaker.OPTIMAL;
+                    break;
+                default:
+                    if (arg.startsWith("-"))
+                        return usage(err);
+                    roots.add(Paths.get(arg));
+            }
+        }
+        if (roots.isEmpty())
+            return usage(err);
+
+        return new ReflowMain(new TextFlow(lineBreaker), all, check, err).run(roots, out);
+    }
+
+    private static int usage(PrintStream err) {
+        err.println("usage: reflow [--check] [--all] [--even] PATH...");
+        return 2;
+    }
+
+    private int run(List<Path> roots, PrintStream out) {
+        List<Path> files = new ArrayList<>();
+        for (Path root: roots) {
+            try {
+                collectFiles(root, files);
+            } catch (IOException e) {
+                fail(root, e);
+            }
+        }
+
+        // Diffs are collected and printed in order, so that output doesn’t
+        // depend on thread scheduling.
+        List<String> diffs = files.parallelStream()
+                .map(this::process)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        diffs.forEach(out::print);
+        if (_failed.get())
+            return 2;
+        return _check && !diffs.isEmpty() ? 1 : 0;
+    }
+
+    /** Report a file that couldn’t be processed, and carry on */
+    private void fail(Path file, IOException e) {
+        String message = e.getMessage();
+        if (e instanceof FileSystemException) {
+            // The message of, e.g., AccessDeniedException is just the file
+            message = ((FileSystemException)e).getReason();
+        }
+        _err.println(file + ": " + (message != null ? message : e.getClass().getSimpleName()));
+        _failed.set(true);
+    }
+
+    private void collectFiles(Path root, List<Path> files) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                boolean hidden = !dir.equals(root)
+                        && dir.getFileName().toString().startsWith(".");
+                return hidden ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && (file.equals(root) || isSource(file)))
+                    files.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                fail(file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean isSource(Path file) {
+        return COMMENT_STYLES.containsKey(extension(file));
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * The path to show in a diff header: relative, so that the a/ and b/
+     * prefixes make sense, and so the diff applies from the working directory
+     */
+    private static String diffPath(Path file) {
+        Path absolute = file.toAbsolutePath().normalize();
+        Path cwd = Paths.get("").toAbsolutePath();
+        if (absolute.startsWith(cwd))
+            return cwd.relativize(absolute).toString();
+        return absolute.getRoot().relativize(absolute).toString();
+    }
+
+    /**
+     * Reflow one file, returning its diff in check mode, its name if it was
+     * rewritten, or null if it needs no changes.
+     */
+    private String process(Path file) {
+        CommentReflower reflower = _reflowers.get(extension(file));
+        if (reflower == null) {
+            _err.println("skipping " + file + ": unknown language");
+            return null;
+        }
+        try {
+            CharBuffer text = read(file);
+            if (text == null)
+                return null;
+
+            List<TextEdit> edits = reflowComments(reflower, text);
+            if (edits.isEmpty())
+                return null;
+
+            if (_check)
+                return UnifiedDiff.format(diffPath(file), text, edits);
+
+            write(file, apply(text, edits));
+            return "reflowed " + file + "\n";
+        } catch (IOException e) {
+            fail(file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Return the edits that reflow the comments in text, whatever its line
+     * separator. With CRLF, the comments are reflowed in a copy with plain
+     * newlines, and the edits are mapped back to text, with CRLF in their
+     * replacements, so that the lines around them are left as they were.
+     */
+    private static List<TextEdit> reflowComments(CommentReflower reflower, CharSequence text) {
+        int firstNewline = indexOf(text, '\n');
+        if (firstNewline <= 0 || text.charAt(firstNewline - 1) != '\r')
+            return reflower.reflowComments(text);
+
+        // crBefore[k] is where, in the copy, the newline after the kth
+        // dropped ‘\r’ is.
+        StringBuilder lf = new StringBuilder(text.length());
+        int[] crBefore = new int[16];
+        int crs = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r' && i + 1 < text.length() && text.charAt(i + 1) == '\n') {
+                if (crs == crBefore.length)
+                    crBefore = Arrays.copyOf(crBefore, crs * 2);
+                crBefore[crs++] = lf.length();
+            } else {
+                lf.append(c);
+            }
+        }
+
+        List<TextEdit> edits = new ArrayList<>();
+        for (TextEdit e: reflower.reflowComments(lf)) {
+            edits.add(new TextEdit(
+                    original(crBefore, crs, e.getStart()),
+                    original(crBefore, crs, e.getEnd()),
+                    e.getReplacement().replace("\n", "\r\n")));
+        }
+        return edits;
+    }
+
+    /**
+     * The offset in the original text of offset in the copy: past every
+     * dropped ‘\r’ before it, but not the one just before its own newline.
+     */
+    private static int original(int[] crBefore, int crs, int offset) {
+        int i = Arrays.binarySearch(crBefore, 0, crs, offset);
+        return offset + (i >= 0 ? i : -i - 1);
+    }
+
+    private static int indexOf(CharSequence text, char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /** Map and decode the file, or return null if it isn’t UTF-8 text. */
+    private static CharBuffer read(Path file) throws IOException {
+        try (FileChannel c = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = c.size();
+            if (size == 0 || size > Integer.MAX_VALUE)
+                return null;
+            MappedByteBuffer bytes = c.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            try {
+                return UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(bytes);
+            } catch (CharacterCodingException e) {
+                return null;
+            }
+        }
+    }
+
+    private static String apply(CharSequence text, List<TextEdit> edits) {
+        StringBuilder sb = new StringBuilder(text.length() + text.length() / 16);
+        int pos = 0;
+        for (TextEdit e: edits) {
+            sb.append(text, pos, e.getStart()).append(e.getReplacement());
+            pos = e.getEnd();
+        }
+        return sb.append(text, pos, text.length()).toString();
+    }
+
+    /** Replace the file’s contents without ever leaving it half-written. */
+    private static void write(Path file, String contents) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, "." + file.getFileName(), ".tmp");
+        try {
+            Files.write(tmp, contents.getBytes(UTF_8));
+            if (Files.getFileAttributeView(file, PosixFileAttributeView.class) != null)
+                Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(file));
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
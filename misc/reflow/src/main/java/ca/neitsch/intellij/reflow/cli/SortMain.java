@@ -0,0 +1,93 @@
+package ca.neitsch.intellij.reflow.cli;
+
+import ca.neitsch.intellij.reflow.ExternalSorter;
+import ca.neitsch.intellij.reflow.LineSorter;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sort a file of any size from the command line, in the same order as the
+ * sort actions in the IDE.
+ *
+ * <pre>
+ * usage: sort [-V|-L] [-f] [-r] [-u] [-k FIELD|--column N]
+ *             [-S CHARS] [-T TMPDIR] [-o OUTPUT] FILE
+ * </pre>
+ *
+ * Without <tt>-o</tt>, the sorted lines go to standard output. The output
+ * file may be the input file.
+ */
+public class SortMain {
+    private static final String USAGE =
+            "usage: sort [-V|-L] [-f] [-r] [-u] [-k FIELD|--column N]\n"
+            + "            [-S CHARS] [-T TMPDIR] [-o OUTPUT] FILE";
+
+    public static void main(String[] args) throws IOException {
+        List<String> options = new ArrayList<>();
+        Path input = null;
+        Path output = null;
+        long runChars = ExternalSorter.DEFAULT_RUN_CHARS;
+        Path tempDir = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o":
+                        output = Paths.get(value(args, ++i));
+                        break;
+                    case "-S":
+                        runChars = Long.parseLong(value(args, ++i));
+                        break;
+                    case "-T":
+                        tempDir = Paths.get(value(args, ++i));
+                        break;
+                    case "-k":
+                    case "--column":
+                        options.add(args[i]);
+                        options.add(value(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            options.add(args[i]);
+                        } else if (input == null) {
+                            input = Paths.get(args[i]);
+                        } else {
+                            usage();
+                        }
+                }
+            }
+            if (input == null)
+                usage();
+
+            ExternalSorter sorter = new ExternalSorter(LineSorter.fromOptions(options));
+            sorter.setRunChars(runChars);
+            sorter.setTempDirectory(tempDir);
+            if (output != null) {
+                sorter.sort(input, output);
+            } else {
+                WritableByteChannel out = Channels.newChannel(System.out);
+                sorter.sort(input, out);
+                System.out.flush();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length)
+            usage();
+        return args[i];
+    }
+
+    private static void usage() {
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
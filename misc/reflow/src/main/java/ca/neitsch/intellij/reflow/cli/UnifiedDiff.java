@@ -0,0 +1,71 @@
+package ca.neitsch.intellij.reflow.cli;
+
+import ca.neitsch.intellij.reflow.TextEdit;
+
+import java.util.List;
+
+/**
+ * Formats edits as a unified diff without context lines, as from
+ * <tt>diff -U0</tt>; apply it with <tt>git apply --unidiff-zero</tt>.
+ */
+class UnifiedDiff {
+    /**
+     * @param edits Non-overlapping edits of text, in increasing order of
+     *         position
+     */
+    static String format(String path, CharSequence text, List<TextEdit> edits) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- a/").append(path).append('\n');
+        sb.append("+++ b/").append(path).append('\n');
+
+        int line = 1;
+        int scanned = 0;
+        int delta = 0;
+        for (TextEdit e: edits) {
+            // Widen the edit to whole lines.
+            int hunkStart = e.getStart();
+            while (hunkStart > 0 && text.charAt(hunkStart - 1) != '\n')
+                hunkStart--;
+            int hunkEnd = Math.max(e.getEnd(), e.getStart() + 1);
+            while (hunkEnd < text.length() && text.charAt(hunkEnd - 1) != '\n')
+                hunkEnd++;
+            hunkEnd = Math.min(hunkEnd, text.length());
+
+            for (; scanned < hunkStart; scanned++) {
+                if (text.charAt(scanned) == '\n')
+                    line++;
+            }
+
+            String oldText = text.subSequence(hunkStart, hunkEnd).toString();
+            String newText = text.subSequence(hunkStart, e.getStart())
+                    + e.getReplacement()
+                    + text.subSequence(e.getEnd(), hunkEnd);
+            String[] oldLines = lines(oldText);
+            String[] newLines = lines(newText);
+
+            sb.append(String.format("@@ -%s +%s @@\n",
+                    range(line, oldLines.length),
+                    range(line + delta, newLines.length)));
+            for (String l: oldLines)
+                sb.append('-').append(l).append('\n');
+            for (String l: newLines)
+                sb.append('+').append(l).append('\n');
+
+            delta += newLines.length - oldLines.length;
+        }
+        return sb.toString();
+    }
+
+    private static String[] lines(String s) {
+        if (s.isEmpty())
+            return new String[0];
+        if (s.endsWith("\n"))
+            s = s.substring(0, s.length() - 1);
+        return s.split("\n", -1);
+    }
+
+    private static String range(int start, int count) {
+        // An empty range is numbered by the line before it.
+        return count == 0 ? (start - 1) + ",0" : start + "," + count;
+    }
+}
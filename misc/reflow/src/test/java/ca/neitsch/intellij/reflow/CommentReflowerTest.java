@@ -0,0 +1,132 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang.StringUtils.repeat;
+import static org.junit.Assert.*;
+
+public class CommentReflowerTest {
+    private CommentReflower _r = new CommentReflower(new TextFlow(),
+            CodecRegistry.DEFAULT, false);
+
+    @Test
+    public void testReflowsOnlyLongParagraphs() {
+        String text = String.join("\n",
+                "class Foo {",
+                "    // short",
+                "    // lines",
+                "    //",
+                "    // " + repeat("long ", 20),
+                "    int x; // " + repeat("trailing ", 10),
+                "}",
+                "");
+        assertEquals(String.join("\n",
+                "class Foo {",
+                "    // short",
+                "    // lines",
+                "    //",
+                "    // " + repeat("long ", 13) + "long",
+                "    // " + repeat("long ", 5) + "long",
+                "    int x; // " + repeat("trailing ", 10),
+                "}",
+                ""),
+                apply(text, _r.reflowComments(text)));
+    }
+
+    @Test
+    public void testCommentsFoundByParser() {
+        String text = String.join("\n",
+                "class Foo {",
+                "    // " + repeat("one ", 20),
+                "    // " + repeat("two ", 20),
+                "    int x; // " + repeat("trailing ", 10),
+                "    /* " + repeat("block ", 15) + "*/ int y;",
+                "}",
+                "");
+        // Each line comment runs to the end of its line, like a PsiComment.
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        for (int i = text.indexOf("//"); i != -1; i = text.indexOf("//", i + 1)) {
+            starts.add(i);
+            ends.add(text.indexOf('\n', i));
+        }
+        starts.add(text.indexOf("/*"));
+        ends.add(text.indexOf("*/") + 2);
+
+        assertEquals(String.join("\n",
+                "class Foo {",
+                "    // " + repeat("one ", 17) + "one",
+                "    // one one " + repeat("two ", 15) + "two",
+                "    // " + repeat("two ", 3) + "two",
+                "    int x; // " + repeat("trailing ", 10),
+                "    /* " + repeat("block ", 15) + "*/ int y;",
+                "}",
+                ""),
+                apply(text, _r.reflowComments(text,
+                        starts.stream().mapToInt(i -> i).toArray(),
+                        ends.stream().mapToInt(i -> i).toArray())));
+    }
+
+    @Test
+    public void testJavadoc() {
+        String text = String.join("\n",
+                "    /**",
+                "     * " + repeat("summary ", 10),
+                "     *",
+                "     * @param x " + repeat("xx ", 30),
+                "     * @return y",
+                "     */",
+                "    int foo(int x);");
+        assertEquals(String.join("\n",
+                "    /**",
+                "     * " + repeat("summary ", 8) + "summary",
+                "     * summary",
+                "     *",
+                "     * @param x " + repeat("xx ", 20) + "xx",
+                "     * " + repeat("xx ", 8) + "xx",
+                "     * @return y",
+                "     */",
+                "    int foo(int x);"),
+                apply(text, _r.reflowComments(text)));
+    }
+
+    @Test
+    public void testBlocksEndAtDelimiter() {
+        String text = "/* a */\n" + repeat("code ", 20) + "\n";
+        assertTrue(_r.reflowComments(text).isEmpty());
+    }
+
+    @Test
+    public void testCodeAfterCommentUntouched() {
+        String text = "/* " + repeat("word ", 20) + "*/ int x;\n";
+        assertTrue(_r.reflowComments(text).isEmpty());
+    }
+
+    @Test
+    public void testAll() {
+        String text = "# a\n# b\n";
+        assertTrue(_r.reflowComments(text).isEmpty());
+        assertEquals("# a b\n", apply(text,
+                new CommentReflower(new TextFlow(), CodecRegistry.DEFAULT, true)
+                        .reflowComments(text)));
+    }
+
+    @Test
+    public void testReflowRange() {
+        String text = "x = 1\n# " + repeat("word ", 20) + "\ny = 2\n";
+        List<TextEdit> edits = _r.reflowRange(text, 8, 9);
+        assertEquals(1, edits.size());
+        assertEquals("x = 1\n# " + repeat("word ", 14) + "word\n# word word word word word\ny = 2\n",
+                apply(text, edits));
+    }
+
+    private static String apply(String text, List<TextEdit> edits) {
+        for (int i = edits.size() - 1; i >= 0; i--)
+            text = edits.get(i).applyTo(text);
+        return text;
+    }
+}
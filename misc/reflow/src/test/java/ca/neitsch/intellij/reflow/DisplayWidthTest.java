@@ -0,0 +1,56 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DisplayWidthTest {
+    @Test
+    public void testAscii() {
+        assertEquals(0, DisplayWidth.columns(""));
+        assertEquals(5, DisplayWidth.columns("hello"));
+    }
+
+    @Test
+    public void testTabStops() {
+        assertEquals(8, DisplayWidth.columns("\t"));
+        assertEquals(8, DisplayWidth.columns("abc\t"));
+        assertEquals(17, DisplayWidth.columns("\t\tx"));
+        assertEquals(16, DisplayWidth.advance("\t", 0, 1, 9));
+    }
+
+    @Test
+    public void testWide() {
+        assertEquals(6, DisplayWidth.columns("日本語"));
+        assertEquals(4, DisplayWidth.columns("ＡＢ"));
+        assertEquals(2, DisplayWidth.columns("한"));
+        // Emoji outside the BMP are a surrogate pair but one wide character.
+        assertEquals(2, DisplayWidth.columns("😀"));
+        assertEquals(2, DisplayWidth.of(0x20000));
+    }
+
+    @Test
+    public void testZeroWidth() {
+        assertEquals(1, DisplayWidth.columns("e\u0301"));
+        assertEquals(2, DisplayWidth.columns("a\u200Bb"));
+        assertEquals(1, DisplayWidth.columns("\u00AD"));
+        assertEquals(0, DisplayWidth.of(0xE0100));
+    }
+
+    @Test
+    public void testUnpairedSurrogate() {
+        assertEquals(2, DisplayWidth.columns("\uD800x"));
+    }
+
+    @Test
+    public void testOffsetAt() {
+        assertEquals(0, DisplayWidth.offsetAt("abc", 0));
+        assertEquals(2, DisplayWidth.offsetAt("abc", 2));
+        assertEquals(3, DisplayWidth.offsetAt("abc", 7));
+        assertEquals(1, DisplayWidth.offsetAt("\tx", 3));
+        assertEquals(1, DisplayWidth.offsetAt("日本", 2));
+        assertEquals(2, DisplayWidth.offsetAt("日本", 3));
+        // A combining mark stays with its base.
+        assertEquals(2, DisplayWidth.offsetAt("e\u0301x", 1));
+    }
+}
@@ -0,0 +1,99 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+public class ExternalSorterTest {
+    @Rule
+    public TemporaryFolder _tmp = new TemporaryFolder();
+
+    private String sortExternally(LineSorter sorter, String text, long runChars)
+            throws IOException
+    {
+        Path input = _tmp.newFile().toPath();
+        Files.write(input, text.getBytes(UTF_8));
+        ExternalSorter s = new ExternalSorter(sorter);
+        s.setRunChars(runChars);
+        s.setTempDirectory(_tmp.getRoot().toPath());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        s.sort(input, Channels.newChannel(out));
+        return out.toString("UTF-8");
+    }
+
+    private static String sortInMemory(LineSorter sorter, String text) {
+        LineSequence ls = new LineSequence(
+                new DefaultStringWithSelection(text, 0, text.length()));
+        StringBuilder sb = new StringBuilder();
+        for (String line: sorter.sort(ls.getSelectedLines(), () -> {})) {
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String randomLines(int n) {
+        Random r = new Random(12);
+        String[] words = {"alpha", "Beta", "gamma", "file", "côte", "x"};
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(words[r.nextInt(words.length)])
+                    .append(r.nextInt(200))
+                    .append(' ')
+                    .append(words[r.nextInt(words.length)])
+                    .append(r.nextInt(20) == 0 ? "\r\n" : "\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testMatchesInMemorySort() throws IOException {
+        String text = randomLines(5000);
+        List<List<String>> modes = Arrays.asList(
+                Arrays.asList(),
+                Arrays.asList("-V"),
+                Arrays.asList("-L", "-f"),
+                Arrays.asList("-f", "-u"),
+                Arrays.asList("-V", "-r", "-u", "-k", "2"),
+                Arrays.asList("--column", "3"));
+        for (List<String> options: modes) {
+            LineSorter sorter = LineSorter.fromOptions(options);
+            String expected = sortInMemory(sorter, text);
+            // Small runs force several merge passes.
+            assertEquals(options.toString(), expected, sortExternally(sorter, text, 500));
+            assertEquals(options.toString(), expected, sortExternally(sorter, text, 1 << 20));
+        }
+    }
+
+    @Test
+    public void testLastLineWithoutNewline() throws IOException {
+        assertEquals("a\nb\nc\n", sortExternally(new LineSorter(), "c\nb\na", 1));
+        assertEquals("", sortExternally(new LineSorter(), "", 1));
+    }
+
+    @Test
+    public void testSortFileInPlace() throws IOException {
+        Path file = _tmp.newFile().toPath();
+        Files.write(file, "b\na\n".getBytes(UTF_8));
+        new ExternalSorter(new LineSorter()).sort(file, file);
+        assertEquals(Arrays.asList("a", "b"), Files.readAllLines(file, UTF_8));
+        assertEquals(1, _tmp.getRoot().list().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadOption() {
+        LineSorter.fromOptions(Arrays.asList("-k", "0"));
+    }
+}
@@ -0,0 +1,110 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HyphenatorTest {
+    private final Hyphenator _h = Hyphenator.getDefault();
+
+    private String hyphenated(String word) {
+        StringBuilder sb = new StringBuilder(word);
+        int[] breaks = _h.hyphenate(word);
+        for (int i = breaks.length - 1; i >= 0; i--)
+            sb.insert(breaks[i], '-');
+        return sb.toString();
+    }
+
+    @Test
+    public void testPatterns() {
+        assertEquals("hy-phen-ation", hyphenated("hyphenation"));
+        // Three letters at least have to follow a hyphen
+        assertEquals("com-puter", hyphenated("computer"));
+        assertEquals("al-go-rithm", hyphenated("algorithm"));
+        assertEquals("in-de-pen-dent", hyphenated("independent"));
+    }
+
+    @Test
+    public void testExceptions() {
+        assertEquals("ta-ble", hyphenated("table"));
+        assertEquals("project", hyphenated("project"));
+    }
+
+    @Test
+    public void testCaseAndPunctuation() {
+        assertEquals("(Hy-phen-ation),", hyphenated("(Hyphenation),"));
+    }
+
+    @Test
+    public void testNoBreaks() {
+        assertEquals(0, _h.hyphenate("the").length);
+        assertEquals(0, _h.hyphenate("hyphenation_count").length);
+        assertEquals(0, _h.hyphenate("http://example.com/hyphenation").length);
+    }
+
+    @Test
+    public void testParse() {
+        Hyphenator h = Hyphenator.parse(
+                "% comment\n\\patterns{\na1b\n}\n\\hyphenation{ aaa-bbb }\n");
+        assertArrayEquals(new int[] {4}, h.hyphenate("xxaabxx"));
+        assertArrayEquals(new int[] {3}, h.hyphenate("aaabbb"));
+    }
+
+    @Test
+    public void testFlowHyphenates() {
+        String flowed = LineBreaker.HYPHENATED.flow(
+                "the hyphenation of words", 12);
+        assertEquals("the hyphen\u00AD\nation of\nwords", flowed);
+    }
+
+    @Test
+    public void testFlowBreaksOverlongWord() {
+        String flowed = LineBreaker.HYPHENATED.flow(
+                "incomprehensibilities", 8);
+        for (String line: flowed.split("\n"))
+            assertTrue(line, line.length() <= 8);
+        assertEquals("incomprehensibilities", flowed.replace("\u00AD\n", ""));
+    }
+
+    @Test
+    public void testReflowRejoinsHyphenatedWords() {
+        String text = "the hyphenation of incomprehensibilities";
+        String hyphenated = LineBreaker.HYPHENATED.flow(text, 8);
+        assertTrue(hyphenated, hyphenated.contains("\u00AD\n"));
+
+        List<String> lines = Arrays.asList(hyphenated.split("\n"));
+        assertEquals(LineBreaker.HYPHENATED.flow(text, 20),
+                LineBreaker.HYPHENATED.flow(lines, 20));
+        assertEquals(text, LineBreaker.HYPHENATED.flow(lines, 80));
+    }
+
+    @Test
+    public void testTypedHyphensAreKept() {
+        List<String> lines = Arrays.asList(
+                "This is a well-", "known fact about self-", "contained data");
+        String expected = "This is a well- known fact about self- contained data";
+        assertEquals(expected, LineBreaker.GREEDY.flow(lines, 80));
+        assertEquals(expected, LineBreaker.OPTIMAL.flow(lines, 80));
+        assertEquals(expected, LineBreaker.HYPHENATED.flow(lines, 80));
+
+        List<String> wellKnown = Arrays.asList("well-", "known");
+        assertEquals("well-\nknown", LineBreaker.GREEDY.flow(wellKnown, 5));
+        assertEquals("well-\nknown", LineBreaker.OPTIMAL.flow(wellKnown, 5));
+    }
+
+    @Test
+    public void testOnlyHyphenatingFlowRejoins() {
+        List<String> lines = Arrays.asList("hyphen\u00AD", "ation");
+        assertEquals("hyphen\u00AD ation", LineBreaker.GREEDY.flow(lines, 80));
+        assertEquals("hyphen\u00AD ation", LineBreaker.OPTIMAL.flow(lines, 80));
+    }
+
+    @Test
+    public void testFlowWithoutBreaksOverflows() {
+        assertEquals("a\nlong_identifier",
+                LineBreaker.HYPHENATED.flow("a long_identifier", 6));
+    }
+}
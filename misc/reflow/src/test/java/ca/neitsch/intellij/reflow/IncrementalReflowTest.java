@@ -0,0 +1,118 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import org.junit.Test;
+
+import static org.apache.commons.lang.StringUtils.repeat;
+import static org.junit.Assert.*;
+
+public class IncrementalReflowTest {
+    private IncrementalReflow _r = new IncrementalReflow(new TextFlow(),
+            CodecRegistry.DEFAULT);
+
+    @Test
+    public void testRewrapsFromEditedLine() {
+        String text = String.join("\n",
+                "    // " + repeat("aaaa ", 2),
+                "    // " + repeat("bbbb ", 14) + "cccc",
+                "    // dddd",
+                "    foo();",
+                "");
+        int offset = text.indexOf("cccc") + 2;
+        assertEquals(String.join("\n",
+                "    // " + repeat("aaaa ", 2),
+                "    // " + repeat("bbbb ", 13) + "bbbb",
+                "    // cccc dddd",
+                "    foo();",
+                ""),
+                _r.rewrap(text, offset, false).applyTo(text));
+    }
+
+    @Test
+    public void testShortLineUntouched() {
+        assertNull(_r.rewrap("// foo\n// bar\n", 3, false));
+    }
+
+    @Test
+    public void testCodeUntouched() {
+        String code = "foo(" + repeat("bar, ", 20) + "baz);";
+        assertNull(_r.rewrap(code, 4, false));
+        assertNotNull(_r.rewrap(code, 4, true));
+    }
+
+    @Test
+    public void testTrailingSpaceUntouched() {
+        String text = "# " + repeat("word ", 20);
+        assertNull(_r.rewrap(text, text.length(), false));
+    }
+
+    @Test
+    public void testMarkdownBullet() {
+        String text = "  - " + repeat("item ", 15) + "last\n    more\n  - next\n";
+        assertEquals("  - " + repeat("item ", 14) + "item\n    last more\n  - next\n",
+                _r.rewrap(text, 10, true).applyTo(text));
+    }
+
+    @Test
+    public void testFirstLineOfCComment() {
+        String text = "  /* " + repeat("word ", 15) + "last\n   * more\n   */\n";
+        assertEquals("  /* " + repeat("word ", 14) + "word\n   * last more\n   */\n",
+                _r.rewrap(text, 10, false).applyTo(text));
+    }
+
+    private static final String LONG = repeat("word ", 20) + "end";
+
+    /** Type at the end of the line containing marker, in prose */
+    private TextEdit typeInProse(String text, String marker) {
+        int offset = text.indexOf(marker);
+        return _r.rewrap(text, IncrementalReflow.lineEnd(text, offset), true);
+    }
+
+    @Test
+    public void testProseParagraphRewrapped() {
+        assertNotNull(typeInProse("Intro\n\n" + LONG + "\n", "end"));
+    }
+
+    @Test
+    public void testTableRowUntouched() {
+        String text = "| a | b |\n|---|---|\n| " + LONG + " | x |\n";
+        assertNull(typeInProse(text, "end"));
+    }
+
+    @Test
+    public void testFencedCodeUntouched() {
+        String text = "Intro\n\n```java\n" + LONG + "\n```\n\n" + LONG + "\n";
+        assertNull(typeInProse(text, "end"));
+        // After the fence closes, it’s prose again
+        assertNotNull(_r.rewrap(text, text.length() - 1, true));
+
+        assertNull(typeInProse("~~~~\n```\n" + LONG + "\n", "end"));
+    }
+
+    @Test
+    public void testLongFenceUntouched() {
+        assertNull(typeInProse("```" + LONG + "\ncode\n```\n", "end"));
+    }
+
+    @Test
+    public void testHeadingUntouched() {
+        assertNull(typeInProse("# " + LONG + "\n\nText\n", "end"));
+        assertNull(typeInProse("### " + LONG + "\n", "end"));
+        assertNull(typeInProse(LONG + "\n=====\n", "end"));
+        assertNull(typeInProse(LONG + "\n-----\n", "end"));
+    }
+
+    @Test
+    public void testIndentedCodeUntouched() {
+        assertNull(typeInProse("Intro\n\n    " + LONG + "\n", "end"));
+        assertNull(typeInProse("Intro\n\n\tfoo();\n\n    " + LONG + "\n", "end"));
+    }
+
+    @Test
+    public void testIndentedProseRewrapped() {
+        // A list item’s second paragraph
+        assertNotNull(typeInProse("- item\n\n    " + LONG + "\n", "end"));
+        // An indented line can’t start code in the middle of a paragraph
+        assertNotNull(typeInProse("Intro\n    " + LONG + "\n", "end"));
+    }
+}
@@ -3,6 +3,7 @@ package ca.neitsch.intellij.reflow;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class LineSequenceTest {
@@ -32,4 +33,26 @@ public class LineSequenceTest {
         LineSequence ls = new LineSequence(s);
         assertEquals(s.getString().length(), ls.getLastLineEndPos());
     }
+
+    @Test
+    public void testLinesAreViewsOfText() {
+        StringBuilder text = new StringBuilder("foo\nbar\nbaz");
+        LineSequence ls = new LineSequence(
+                new DefaultStringWithSelection(text, 5, 9));
+        assertEquals(2, ls.getLineCount());
+        assertEquals("bar", ls.getSelectedLineSequences().get(0).toString());
+        assertEquals(ImmutableList.of("bar", "baz"), ls.getSelectedLines());
+    }
+
+    @Test
+    public void testMergeByLine() {
+        String text = "aaa\nbbb\nccc\nddd\n";
+        // The first two share a line; the third ends with ‘bbb\n’, and so
+        // doesn’t touch the fourth’s line.
+        int[][] merged = LineSequence.mergeByLine(text,
+                new int[] {0, 2, 4, 8, 13, 14},
+                new int[] {1, 3, 8, 9, 14, 15});
+        assertArrayEquals(new int[] {0, 4, 8, 13}, merged[0]);
+        assertArrayEquals(new int[] {3, 8, 9, 15}, merged[1]);
+    }
 }
@@ -0,0 +1,105 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LineSorterTest {
+    private static List<String> sort(LineSorter sorter, String... lines) {
+        return Arrays.asList(sorter.sort(Arrays.asList(lines), () -> {}));
+    }
+
+    @Test
+    public void testLexicographic() {
+        assertEquals(Arrays.asList("B", "a", "a10", "a2"),
+                sort(new LineSorter(), "a2", "a10", "B", "a"));
+    }
+
+    @Test
+    public void testNatural() {
+        assertEquals(Arrays.asList("a", "a2", "a02", "a10", "a10b", "b1"),
+                sort(new LineSorter(LineSorter.Order.NATURAL),
+                        "a10b", "b1", "a10", "a2", "a", "a02"));
+    }
+
+    @Test
+    public void testNaturalKeySortsNumbersWhereDigitsSort() {
+        assertEquals("file", LineSorter.naturalKey("file"));
+        assertTrue(LineSorter.naturalKey("x9").compareTo(LineSorter.naturalKey("x10")) < 0);
+        assertTrue(LineSorter.naturalKey("x10").compareTo(LineSorter.naturalKey("xa")) < 0);
+        assertTrue(LineSorter.naturalKey("x ").compareTo(LineSorter.naturalKey("x0")) < 0);
+    }
+
+    @Test
+    public void testIgnoreCaseIsStable() {
+        LineSorter s = new LineSorter();
+        s.setIgnoreCase(true);
+        assertEquals(Arrays.asList("a", "b", "B", "C"),
+                sort(s, "b", "C", "a", "B"));
+    }
+
+    @Test
+    public void testLocale() {
+        LineSorter s = new LineSorter(LineSorter.Order.LOCALE);
+        s.setLocale(Locale.FRENCH);
+        assertEquals(Arrays.asList("cote", "côte", "Cz", "d"),
+                sort(s, "d", "Cz", "côte", "cote"));
+    }
+
+    @Test
+    public void testReverseUnique() {
+        LineSorter s = new LineSorter();
+        s.setReverse(true);
+        s.setUnique(true);
+        assertEquals(Arrays.asList("c", "b", "a"),
+                sort(s, "b", "a", "c", "b", "a"));
+    }
+
+    @Test
+    public void testUniqueComparesKeys() {
+        LineSorter s = new LineSorter();
+        s.setIgnoreCase(true);
+        s.setUnique(true);
+        assertEquals(Arrays.asList("A", "b"), sort(s, "b", "A", "a", "B"));
+    }
+
+    @Test
+    public void testField() {
+        LineSorter s = new LineSorter(LineSorter.Order.NATURAL);
+        s.setField(2);
+        assertEquals(Arrays.asList("short", "x  1 z", "y\t3 a", "w 20"),
+                sort(s, "w 20", "y\t3 a", "x  1 z", "short"));
+    }
+
+    @Test
+    public void testColumn() {
+        LineSorter s = new LineSorter();
+        s.setColumn(9);
+        assertEquals("b", s.keyText("\tb"));
+        assertEquals("9x", s.keyText("123456789x"));
+        assertEquals("", s.keyText("1234"));
+    }
+
+    @Test
+    public void testLargeInputMatchesSequentialSort() {
+        Random r = new Random(11);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            lines.add("line " + r.nextInt(1000));
+        }
+        LineSorter s = new LineSorter(LineSorter.Order.NATURAL);
+        String[] sorted = s.sort(lines, () -> {});
+
+        List<String> expected = new ArrayList<>(lines);
+        expected.sort((a, b) -> Integer.compare(
+                Integer.parseInt(a.substring(5)),
+                Integer.parseInt(b.substring(5))));
+        assertEquals(expected, Arrays.asList(sorted));
+    }
+}
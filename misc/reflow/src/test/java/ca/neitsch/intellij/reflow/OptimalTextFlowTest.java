@@ -0,0 +1,154 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class OptimalTextFlowTest {
+    @Test
+    public void testShortParagraph() {
+        assertEquals("The quick brown fox jumped\nover the lazy dogs",
+                new OptimalTextFlow("The quick brown fox jumped over the lazy dogs", 30)
+                        .getFlowed());
+    }
+
+    @Test
+    public void testBeatsGreedy() {
+        // Greedy fills the first line and leaves the second nearly empty.
+        String s = "aaa bb cc ddddd";
+        assertEquals("aaa bb\ncc\nddddd", new GreedyTextFlow(s, 6).getFlowed());
+        assertEquals("aaa\nbb cc\nddddd", new OptimalTextFlow(s, 6).getFlowed());
+    }
+
+    @Test
+    public void testLongWord() {
+        assertEquals("a\nsupercalifragilistic\nb c",
+                new OptimalTextFlow(" a supercalifragilistic b c", 5).getFlowed());
+    }
+
+    @Test
+    public void testWideCharacters() {
+        // Each word is six columns wide, though only three characters long.
+        String s = "日本語 日本語 日本語";
+        assertEquals("日本語 日本語\n日本語", new GreedyTextFlow(s, 13).getFlowed());
+        // Ideographs may be broken between, even without a space.
+        assertEquals("日本語 日本\n語 日本語", new GreedyTextFlow(s, 12).getFlowed());
+        assertEquals("日本語 日本語\n日本語", new OptimalTextFlow(s, 13).getFlowed());
+    }
+
+    @Test
+    public void testTextWithoutSpaces() {
+        // 「…」 and 。 mustn’t be separated from the characters they follow or
+        // precede, and the pieces go back together without spaces.
+        String s = "これは「日本語」の文です。";
+        assertEquals("これは「日\n本語」の文\nです。", new GreedyTextFlow(s, 10).getFlowed());
+        assertEquals("これは「日\n本語」の文\nです。", new OptimalTextFlow(s, 10).getFlowed());
+        assertEquals(s, new GreedyTextFlow(Arrays.asList("これは「日本", "語」の文です。"), 80)
+                .getFlowed());
+    }
+
+    @Test
+    public void testEmpty() {
+        assertEquals("", new OptimalTextFlow("  ", 10).getFlowed());
+    }
+
+    @Test
+    public void testMatchesQuadraticDynamicProgram() {
+        Random r = new Random(1);
+        for (int trial = 0; trial < 500; trial++) {
+            String s = randomParagraph(r, 1 + r.nextInt(60), 12);
+            int width = 5 + r.nextInt(30);
+            String flowed = new OptimalTextFlow(s, width).getFlowed();
+            assertSameWords(s, flowed);
+            assertEquals(s + " @" + width,
+                    quadraticBadness(words(s), width), badness(flowed, width));
+        }
+    }
+
+    @Test
+    public void testLargeParagraphAgainstGreedy() {
+        String s = randomParagraph(new Random(2), 200_000, 12);
+        int width = 72;
+
+        // Warm up both before timing them.
+        for (int i = 0; i < 3; i++) {
+            new GreedyTextFlow(s, width).getFlowed();
+            new OptimalTextFlow(s, width).getFlowed();
+        }
+
+        long t0 = System.nanoTime();
+        String greedy = new GreedyTextFlow(s, width).getFlowed();
+        long t1 = System.nanoTime();
+        String optimal = new OptimalTextFlow(s, width).getFlowed();
+        long t2 = System.nanoTime();
+
+        assertSameWords(greedy, optimal);
+        for (String line: optimal.split("\n"))
+            assertTrue(line, line.length() <= width);
+        assertTrue(badness(optimal, width) <= badness(greedy, width));
+
+        // A quadratic algorithm would be thousands of times slower here.
+        long greedyNanos = t1 - t0;
+        long optimalNanos = t2 - t1;
+        assertTrue(String.format("greedy %dms, optimal %dms",
+                        greedyNanos / 1_000_000, optimalNanos / 1_000_000),
+                optimalNanos < 50 * greedyNanos + 500_000_000L);
+    }
+
+    static String randomParagraph(Random r, int wordCount, int maxWordLength) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i != 0)
+                sb.append(r.nextInt(10) == 0 ? "\n" : " ");
+            int length = 1 + r.nextInt(maxWordLength);
+            for (int j = 0; j < length; j++)
+                sb.append((char)('a' + r.nextInt(26)));
+        }
+        return sb.toString();
+    }
+
+    private static String[] words(String s) {
+        return Arrays.stream(s.split("\\s+"))
+                .filter(w -> !w.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    private static void assertSameWords(String expected, String actual) {
+        assertArrayEquals(words(expected), words(actual));
+    }
+
+    /** Sum of squared trailing space over every line but the last */
+    private static long badness(String flowed, int width) {
+        String[] lines = flowed.split("\n");
+        long total = 0;
+        for (int i = 0; i < lines.length - 1; i++) {
+            long slack = Math.max(0, width - lines[i].length());
+            total += slack * slack;
+        }
+        return total;
+    }
+
+    private static long quadraticBadness(String[] words, int width) {
+        int n = words.length;
+        long[] best = new long[n + 1];
+        long answer = Long.MAX_VALUE;
+        for (int j = 1; j <= n; j++) {
+            best[j] = Long.MAX_VALUE;
+            for (int i = j - 1; i >= 0; i--) {
+                int lineWidth = -1;
+                for (int k = i; k < j; k++)
+                    lineWidth += words[k].length() + 1;
+                if (lineWidth > width && i != j - 1)
+                    break;
+                long slack = Math.max(0, width - lineWidth);
+                best[j] = Math.min(best[j], best[i] + slack * slack);
+                if (j == n)
+                    answer = Math.min(answer, best[i]);
+            }
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,71 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReflowTimingsTest {
+    private static final List<String> COMMENT = Arrays.asList(
+            "// The quick brown fox",
+            "// jumped over the lazy dogs");
+
+    @Before
+    public void setUp() {
+        // So that every test detects codecs rather than hitting the cache
+        TextFlow.clearCache();
+    }
+
+    @After
+    public void tearDown() {
+        ReflowTimings.setEnabled(false);
+        ReflowTimings.clear();
+    }
+
+    @Test
+    public void testOffByDefault() {
+        assertSame(ReflowTimings.Record.NONE, ReflowTimings.begin("test"));
+        assertSame(ReflowTimings.Record.NONE, ReflowTimings.current());
+        new TextFlow().reflow(COMMENT);
+        assertTrue(ReflowTimings.codecHits().isEmpty());
+    }
+
+    @Test
+    public void testRecordsPhasesAndCodecs() {
+        ReflowTimings.setEnabled(true);
+        ReflowTimings.Record r = ReflowTimings.begin("test");
+        r.attach();
+        try {
+            new TextFlow().reflow(COMMENT);
+            new TextFlow().reflowParagraphs(COMMENT);
+        } finally {
+            r.detach();
+        }
+        r.finish();
+
+        assertTrue(r.getNanos(ReflowTimings.Phase.DETECT) > 0);
+        assertTrue(r.getNanos(ReflowTimings.Phase.BREAK) > 0);
+        assertTrue(r.getNanos(ReflowTimings.Phase.APPLY) > 0);
+        assertEquals(0, r.getNanos(ReflowTimings.Phase.WRITE));
+        // The second reflow is answered by the cache, without detecting again.
+        assertEquals(Long.valueOf(1), ReflowTimings.codecHits().get("// comment"));
+        assertEquals(Arrays.asList(r), ReflowTimings.recent());
+    }
+
+    @Test
+    public void testRingKeepsMostRecent() {
+        ReflowTimings.setEnabled(true);
+        ReflowTimings.Record last = null;
+        for (int i = 0; i < 1000; i++) {
+            last = ReflowTimings.begin("test " + i);
+            last.finish();
+        }
+        List<ReflowTimings.Record> recent = ReflowTimings.recent();
+        assertEquals(256, recent.size());
+        assertSame(last, recent.get(recent.size() - 1));
+    }
+}
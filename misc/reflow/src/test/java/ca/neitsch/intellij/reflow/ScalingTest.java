@@ -0,0 +1,207 @@
+package ca.neitsch.intellij.reflow;
+
+import ca.neitsch.intellij.reflow.blockcomment.CComment;
+import ca.neitsch.intellij.reflow.blockcomment.Codec;
+import ca.neitsch.intellij.reflow.blockcomment.CodecRegistry;
+import ca.neitsch.intellij.reflow.blockcomment.CodecType;
+import ca.neitsch.intellij.reflow.blockcomment.CommonPrefix;
+import ca.neitsch.intellij.reflow.blockcomment.JavadocComment;
+import ca.neitsch.intellij.reflow.blockcomment.LineComment;
+import ca.neitsch.intellij.reflow.blockcomment.PythonDocstring;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs each stage of reflowing on generated input at doubling sizes, and
+ * fails if the time taken or the memory allocated grows much faster than the
+ * input. Over three doublings, linear work grows eightfold and quadratic work
+ * sixty-fourfold, so the limits leave plenty of room for noise while still
+ * catching a loop that rescans or rebuilds what it has already seen.
+ */
+public class ScalingTest {
+    private static final int BASE_LINES = 4000;
+    private static final int DOUBLINGS = 3;
+    private static final int RUNS = 5;
+
+    private static final double MAX_TIME_GROWTH = 24;
+    private static final double MAX_ALLOCATION_GROWTH = 12;
+
+    @Test
+    public void testLineSequence() {
+        assertLinear("LineSequence", n -> {
+            String text = String.join("\n", lines("", n));
+            return () -> new LineSequence(
+                    new DefaultStringWithSelection(text, 1, text.length() - 1))
+                    .getSelectedLines();
+        });
+    }
+
+    @Test
+    public void testJavadocComment() {
+        assertLinearCodec(new JavadocComment.Type(), n -> block("    /**", "     * ", "     */", n));
+    }
+
+    @Test
+    public void testCComment() {
+        assertLinearCodec(new CComment.Type(), n -> block("/*", " * ", " */", n));
+    }
+
+    @Test
+    public void testPythonDocstring() {
+        assertLinearCodec(new PythonDocstring.Type(), n -> block("    \"\"\"", "    ", "    \"\"\"", n));
+    }
+
+    @Test
+    public void testLineComments() {
+        assertLinearCodec(new LineComment.DoubleSlash(), n -> lines("  // ", n));
+        assertLinearCodec(new LineComment.Hash(), n -> lines("# ", n));
+        assertLinearCodec(new LineComment.DoubleDash(), n -> lines("-- ", n));
+    }
+
+    @Test
+    public void testCommonPrefix() {
+        assertLinearCodec(new CommonPrefix.Type(), n -> lines("> > ", n));
+        assertLinearCodec(new CommonPrefix.Type(), n -> {
+            List<String> l = lines("    ", n);
+            l.set(0, "  - " + l.get(0).trim());
+            return l;
+        });
+    }
+
+    @Test
+    public void testClassify() {
+        assertLinear("CodecRegistry.classify", n -> {
+            List<String> l = lines("// ", n);
+            return () -> CodecRegistry.DEFAULT.classify(l);
+        });
+    }
+
+    @Test
+    public void testGreedyReflow() {
+        assertLinearReflow(LineBreaker.GREEDY);
+    }
+
+    @Test
+    public void testOptimalReflow() {
+        assertLinearReflow(LineBreaker.OPTIMAL);
+    }
+
+    @Test
+    public void testHyphenatedReflow() {
+        assertLinearReflow(LineBreaker.HYPHENATED);
+    }
+
+    private void assertLinearReflow(LineBreaker breaker) {
+        assertLinear("TextFlow", n -> {
+            List<String> l = lines(" * ", n);
+            TextFlow f = new TextFlow(breaker);
+            return () -> {
+                TextFlow.clearCache();
+                f.reflow(l);
+            };
+        });
+    }
+
+    private void assertLinearCodec(CodecType type, IntFunction<List<String>> input) {
+        assertLinear(type.getName(), n -> {
+            List<String> l = input.apply(n);
+            return () -> {
+                Codec c = type.create(l);
+                assertTrue(type.getName(), c.detect());
+                c.getWrapWidth();
+                c.apply(c.innerContents());
+            };
+        });
+    }
+
+    /**
+     * Run the task made for each size, from the input made outside the
+     * timing, and check how the best of several runs grows.
+     */
+    private static void assertLinear(String name, IntFunction<Runnable> setup) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean countAllocation = threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemoryEnabled();
+
+        int sizes = DOUBLINGS + 1;
+        long[] nanos = new long[sizes];
+        long[] bytes = new long[sizes];
+        for (int i = 0; i < sizes; i++) {
+            Runnable task = setup.apply(BASE_LINES << i);
+            // Warm up, so that the smallest size isn’t timed in the
+            // interpreter.
+            task.run();
+            nanos[i] = best(RUNS, task, System::nanoTime);
+            if (countAllocation) {
+                com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean)threads;
+                long id = Thread.currentThread().getId();
+                bytes[i] = best(RUNS, task, () -> t.getThreadAllocatedBytes(id));
+            }
+        }
+
+        String report = name + ": " + describe(nanos, "ns") + "; " + describe(bytes, "bytes");
+        assertTrue(report, growth(nanos) <= MAX_TIME_GROWTH);
+        if (countAllocation)
+            assertTrue(report, growth(bytes) <= MAX_ALLOCATION_GROWTH);
+    }
+
+    /** The least difference in the counter across a run of the task */
+    private static long best(int runs, Runnable task, LongSupplier counter) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = counter.getAsLong();
+            task.run();
+            best = Math.min(best, counter.getAsLong() - start);
+        }
+        return best;
+    }
+
+    private static double growth(long[] values) {
+        return (double)values[values.length - 1] / Math.max(1, values[0]);
+    }
+
+    private static String describe(long[] values, String unit) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(BASE_LINES << i).append(" lines ").append(values[i]).append(' ').append(unit);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> block(String first, String prefix, String last, int n) {
+        List<String> l = lines(prefix, n);
+        l.add(0, first);
+        l.add(last);
+        return l;
+    }
+
+    /** n lines of pseudo-random words, the same every time */
+    private static List<String> lines(String prefix, int n) {
+        Random r = new Random(n);
+        List<String> ret = new ArrayList<>(n + 2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.setLength(0);
+            sb.append(prefix);
+            while (sb.length() < 70) {
+                for (int k = 1 + r.nextInt(10); k > 0; k--)
+                    sb.append((char)('a' + r.nextInt(26)));
+                sb.append(' ');
+            }
+            sb.setLength(sb.length() - 1);
+            ret.add(sb.toString());
+        }
+        return ret;
+    }
+}
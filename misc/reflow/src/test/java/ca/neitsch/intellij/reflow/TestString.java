@@ -23,6 +23,11 @@ public class TestString
         _o = new DefaultStringWithSelection(s, startPos, endPos);
     }
 
+    @Override
+    public CharSequence getText() {
+        return _o.getText();
+    }
+
     @Override
     public String getString() {
         return _o.getString();
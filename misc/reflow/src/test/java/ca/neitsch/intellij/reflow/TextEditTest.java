@@ -0,0 +1,43 @@
+package ca.neitsch.intellij.reflow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextEditTest {
+    @Test
+    public void testUnchanged() {
+        assertNull(TextEdit.minimal("xx foo\nbar\nyy", 3, 11, "foo\nbar\n"));
+    }
+
+    @Test
+    public void testOneLineChanged() {
+        String text = "xx a\nb\nc\nyy";
+        TextEdit e = TextEdit.minimal(text, 3, 9, "a\nB\nc\n");
+        assertEquals(5, e.getStart());
+        assertEquals(6, e.getEnd());
+        assertEquals("B", e.getReplacement());
+        assertEquals("xx a\nB\nc\nyy", e.applyTo(text));
+    }
+
+    @Test
+    public void testInsertionAndDeletion() {
+        String text = "foo bar\n";
+        TextEdit grow = TextEdit.minimal(text, 0, 8, "foo\nbar\n");
+        assertEquals("foo\nbar\n", grow.applyTo(text));
+        assertEquals(3, grow.getStart());
+        assertEquals(4, grow.getEnd());
+
+        TextEdit shrink = TextEdit.minimal("aaaa", 0, 4, "aa");
+        assertEquals("aa", shrink.applyTo("aaaa"));
+        assertEquals("", shrink.getReplacement());
+    }
+
+    @Test
+    public void testSurrogatePairsKeptWhole() {
+        String text = "x😀";
+        TextEdit e = TextEdit.minimal(text, 0, 3, "x😁");
+        assertEquals(1, e.getStart());
+        assertEquals("😁", e.getReplacement());
+    }
+}
@@ -1,6 +1,7 @@
 package ca.neitsch.intellij.reflow;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
@@ -87,11 +88,93 @@ public class TextFlowTest {
                 _f.balance("The\nquick brown fox jumped over the lazy dogs", 30));
     }
 
+    @Test
+    public void testReflowParagraphs() {
+        List<String> l = ImmutableList.of(
+                "/*",
+                " * foo",
+                " * bar",
+                " *",
+                " * baz",
+                " *   - one",
+                " *     two",
+                " *   - three",
+                " */");
+        assertEquals(String.join("\n",
+                "/*",
+                " * foo bar",
+                " *",
+                " * baz",
+                " *   - one two",
+                " *   - three",
+                " */",
+                ""),
+                _f.reflowParagraphs(l));
+    }
+
+    @Test
+    public void testReflowManyParagraphsInParallel() {
+        List<String> l = Lists.newArrayList();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            l.add("# paragraph " + i + " " + repeat("word ", 20));
+            l.add("# " + repeat("more ", 10));
+            l.add("#");
+            expected.append(_f.reflow(l.subList(l.size() - 3, l.size() - 1)))
+                    .append("#\n");
+        }
+        assertEquals(expected.toString(), _f.reflowParagraphs(l));
+    }
+
     @Test
     public void testNonAlphabeticPrefix() {
         assertEquals("   // ", nonAlphabeticPrefix("   // foo"));
     }
 
+    @Test
+    public void testRepeatedReflowIsCached() {
+        List<String> l = ImmutableList.of("// " + repeat("cached ", 30));
+        String first = _f.reflow(l);
+        long hits = TextFlow.cacheStats().hitCount();
+        assertEquals(first, new TextFlow().reflow(l));
+        assertEquals(hits + 1, TextFlow.cacheStats().hitCount());
+    }
+
+    /** Reflow l, then reflow the result, and return whether that hit */
+    private static boolean reflowOfOutputHits(LineBreaker lineBreaker, List<String> l) {
+        TextFlow f = new TextFlow(lineBreaker);
+        String first = f.reflow(l);
+        List<String> reflowed = ImmutableList.copyOf(
+                first.substring(0, first.length() - 1).split("\n"));
+
+        long hits = TextFlow.cacheStats().hitCount();
+        assertEquals(first, f.reflow(reflowed));
+        return TextFlow.cacheStats().hitCount() == hits + 1;
+    }
+
+    @Test
+    public void testReflowedBlockIsCachedAsItself() {
+        List<String> l = ImmutableList.of("# " + repeat("fixed point ", 20));
+        assertTrue(reflowOfOutputHits(LineBreaker.GREEDY, l));
+        assertTrue(reflowOfOutputHits(LineBreaker.OPTIMAL, l));
+    }
+
+    @Test
+    public void testHyphenatedBlockIsNotCachedAsItself() {
+        List<String> l = ImmutableList.of("# " + repeat("hyphenation ", 20));
+        assertFalse(reflowOfOutputHits(LineBreaker.HYPHENATED, l));
+    }
+
+    @Test
+    public void testCacheKeyIncludesLineBreaker() {
+        List<String> l = ImmutableList.of(repeat("engine ", 30));
+        String greedy = _f.reflow(l);
+        long misses = TextFlow.cacheStats().missCount();
+        new TextFlow(LineBreaker.OPTIMAL).reflow(l);
+        assertEquals(misses + 1, TextFlow.cacheStats().missCount());
+        assertEquals(greedy, _f.reflow(l));
+    }
+
     private void assertCorrectReflow(String sampleFileName) {
         String expectedOutput = getTestFile(sampleFileName + ".out.txt");
         String rawInput = getTestFile(sampleFileName + ".in.txt");
@@ -0,0 +1,74 @@
+package ca.neitsch.intellij.reflow;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WordScannerTest {
+    @Test
+    public void testWordsAcrossLines() {
+        assertEquals(ImmutableList.of("foo", "bar", "baz", "q\u00A0ux"),
+                words(ImmutableList.of("  foo\tbar", "", "baz  ", "q\u00A0ux")));
+    }
+
+    @Test
+    public void testNoWords() {
+        assertEquals(ImmutableList.of(), words(ImmutableList.of(" ", "\t")));
+        assertEquals(ImmutableList.of(), words(ImmutableList.of()));
+    }
+
+    @Test
+    public void testPositions() {
+        WordScanner w = new WordScanner(ImmutableList.of("a", " bc "));
+        assertTrue(w.next());
+        assertEquals(0, w.lineIndex());
+        assertTrue(w.next());
+        assertEquals(1, w.lineIndex());
+        assertEquals(1, w.start());
+        assertEquals(3, w.end());
+        assertFalse(w.next());
+    }
+
+    @Test
+    public void testUnicodeBreaks() {
+        assertEquals(ImmutableList.of("漢", "字", "（か", "な）", "と", "abc"),
+                words(ImmutableList.of("漢字（かな）とabc")));
+        assertEquals(ImmutableList.of("漢字（かな）とabc"),
+                words(ImmutableList.of("漢字（かな）とabc"), false));
+        // No-break spaces and word joiners hold ideographs together.
+        assertEquals(ImmutableList.of("漢\u00A0字", "\u2060漢\u2060字"),
+                words(ImmutableList.of("漢\u00A0字 \u2060漢\u2060字")));
+        // A zero-width space is a break opportunity, and stays in the text.
+        assertEquals(ImmutableList.of("foo\u200B", "bar"),
+                words(ImmutableList.of("foo\u200Bbar")));
+    }
+
+    @Test
+    public void testSpaceBefore() {
+        WordScanner w = new WordScanner(ImmutableList.of("a 漢字", "かな", "b", " c"));
+        List<Boolean> spaces = new ArrayList<>();
+        while (w.next())
+            spaces.add(w.spaceBefore());
+        // a, 漢, 字, か, な, b, c: a line end within Japanese text is no space.
+        assertEquals(ImmutableList.of(true, true, false, false, false, false, true), spaces);
+    }
+
+    private static List<String> words(List<String> lines) {
+        return words(lines, true);
+    }
+
+    private static List<String> words(List<String> lines, boolean unicodeBreaks) {
+        List<String> ret = new ArrayList<>();
+        WordScanner w = new WordScanner(lines, unicodeBreaks);
+        while (w.next()) {
+            StringBuilder sb = new StringBuilder();
+            w.appendTo(sb);
+            ret.add(sb.toString());
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,74 @@
+package ca.neitsch.intellij.reflow.blockcomment;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CodecRegistryTest {
+    private CodecRegistry _r = CodecRegistry.DEFAULT;
+
+    @Test
+    public void testClassify() {
+        assertName("Javadoc comment", "  /** foo", "   * bar");
+        assertName("C comment", "  /* foo", "   * bar */");
+        assertName("// comment", "// foo", "  // bar");
+        assertName("# comment", "# foo", "# bar");
+        assertName("-- comment", "-- foo");
+        assertName("Python docstring", "    \"\"\"Foo", "    bar\"\"\"");
+        assertName("common prefix", " * foo", " * bar");
+        assertName("common prefix", "// foo", "bar");
+    }
+
+    @Test
+    public void testFallback() {
+        assertTrue(CodecRegistry.isFallback(_r.classify(ImmutableList.of("foo"))));
+        assertFalse(CodecRegistry.isFallback(_r.classify(ImmutableList.of("# foo"))));
+    }
+
+    @Test
+    public void testHashDirectivesAreNotComments() {
+        for (String line: ImmutableList.of("#!/usr/bin/env bash",
+                "#include <stdio.h>", "  #define X 1", "#if DEBUG", "#pragma once"))
+        {
+            assertTrue(line, CodecRegistry.isFallback(_r.classify(ImmutableList.of(line))));
+        }
+        assertName("# comment", "#ifs and buts", "# include this");
+    }
+
+    @Test
+    public void testJavadoc() {
+        Codec c = _r.detect(ImmutableList.of("  /** foo", "   * bar"));
+        assertEquals(ImmutableList.of(" foo", " bar"), c.innerContents());
+        assertEquals(ImmutableList.of("  /** foo bar"),
+                c.apply(ImmutableList.of("foo bar")));
+    }
+
+    @Test
+    public void testDocstring() {
+        Codec c = _r.detect(ImmutableList.of(
+                "    \"\"\"Foo",
+                "    bar",
+                "    \"\"\""));
+        assertTrue(c.detect());
+        assertEquals(ImmutableList.of("Foo", "bar"), c.innerContents());
+        assertEquals(7, c.getWrapWidth());
+        assertEquals(ImmutableList.of("    \"\"\"Foo bar", "    \"\"\""),
+                c.apply(ImmutableList.of("Foo bar")));
+    }
+
+    @Test
+    public void testOneLineDocstring() {
+        Codec c = _r.detect(ImmutableList.of("  '''Foo bar'''"));
+        assertEquals(ImmutableList.of("Foo bar"), c.innerContents());
+        assertEquals(ImmutableList.of("  '''Foo", "  bar'''"),
+                c.apply(ImmutableList.of("Foo", "bar")));
+    }
+
+    private void assertName(String expected, String... lines) {
+        List<String> l = ImmutableList.copyOf(lines);
+        assertEquals(expected, _r.classify(l).getName());
+    }
+}
@@ -0,0 +1,151 @@
+package ca.neitsch.intellij.reflow.cli;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang.StringUtils.repeat;
+import static org.junit.Assert.*;
+
+public class ReflowMainTest {
+    @Rule
+    public TemporaryFolder _tmp = new TemporaryFolder();
+
+    private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream _err = new ByteArrayOutputStream();
+
+    private int run(String... args) throws IOException {
+        return ReflowMain.run(args, new PrintStream(_out, true, "UTF-8"),
+                new PrintStream(_err, true, "UTF-8"));
+    }
+
+    /**
+     * Write a file of code, a long comment, and more code, and return it.
+     */
+    private Path source(String name, String before, String comment, String after)
+            throws IOException
+    {
+        Path file = _tmp.getRoot().toPath().resolve(name);
+        Files.write(file, (before + comment + after).getBytes(UTF_8));
+        return file;
+    }
+
+    /** Check the code around the comment is unchanged, and the comment isn’t */
+    private static void assertOnlyCommentChanged(Path file, String before,
+                                                 String comment, String after)
+            throws IOException
+    {
+        String text = new String(Files.readAllBytes(file), UTF_8);
+        assertTrue(text, text.startsWith(before));
+        assertTrue(text, text.endsWith(after));
+        assertNotEquals(comment, text.substring(before.length(),
+                text.length() - after.length()));
+    }
+
+    @Test
+    public void testCodeIsUnchanged() throws IOException {
+        String words = repeat("word ", 20);
+        String longLine = "x" + repeat(", x", 40);
+
+        String cBefore = "#include <stdio.h>\n"
+                + "#define LONG_MACRO(a, b) " + longLine + "\n";
+        String cComment = "// " + words + "\n";
+        String cAfter = "#if DEBUG\n"
+                + "int f(int i) { return --i; } // " + words + "\n"
+                + "#endif\n";
+
+        String shBefore = "#!/usr/bin/env bash\n";
+        String shComment = "# " + words + "\n";
+        String shAfter = "echo " + longLine + " # not a comment line\n";
+
+        String cssBefore = ":root {\n    --main-color: " + longLine + ";\n";
+        String cssComment = "    /* " + words + "*/\n";
+        String cssAfter = "    -- " + words + "\n}\n";
+
+        String pyBefore = "#!/usr/bin/env python3\nimport sys\n";
+        String pyComment = "# " + words + "\n";
+        String pyAfter = "x = -- 1  # " + words + "\n";
+
+        Path c = source("a.c", cBefore, cComment, cAfter);
+        Path sh = source("b.sh", shBefore, shComment, shAfter);
+        Path css = source("c.css", cssBefore, cssComment, cssAfter);
+        Path py = source("d.py", pyBefore, pyComment, pyAfter);
+
+        assertEquals(0, run(_tmp.getRoot().toString()));
+
+        assertOnlyCommentChanged(c, cBefore, cComment, cAfter);
+        assertOnlyCommentChanged(sh, shBefore, shComment, shAfter);
+        assertOnlyCommentChanged(css, cssBefore, cssComment, cssAfter);
+        assertOnlyCommentChanged(py, pyBefore, pyComment, pyAfter);
+    }
+
+    @Test
+    public void testUnknownLanguageIsSkipped() throws IOException {
+        String text = "# " + repeat("word ", 20) + "\n";
+        Path file = source("notes.unknown", "", text, "");
+        assertEquals(0, run(file.toString()));
+        assertEquals(text, new String(Files.readAllBytes(file), UTF_8));
+    }
+
+    @Test
+    public void testCheckPrintsRelativeDiffPaths() throws IOException {
+        String comment = "// " + repeat("word ", 20) + "\n";
+        Path file = source("a.java", "", comment, "");
+
+        assertEquals(1, run("--check", file.toString()));
+        String diff = _out.toString("UTF-8");
+        String[] lines = diff.split("\n");
+        assertTrue(diff, lines[0].startsWith("--- a/") && lines[0].endsWith("/a.java"));
+        assertFalse(diff, lines[0].startsWith("--- a//"));
+        assertEquals(lines[0].substring(6), lines[1].substring(6));
+        assertEquals(comment, new String(Files.readAllBytes(file), UTF_8));
+    }
+
+    @Test
+    public void testCrlfLineEndingsKept() throws IOException {
+        String before = "int a;\r\n";
+        String comment = "// " + repeat("word ", 20) + "\r\n// more\r\n";
+        String after = "int b;\r\nint c;\r\n";
+        Path file = source("crlf.c", before, comment, after);
+
+        assertEquals(0, run(file.toString()));
+        String text = new String(Files.readAllBytes(file), UTF_8);
+        assertOnlyCommentChanged(file, before, comment, after);
+        assertEquals(text, text.replace("\r\n", "\n").replace("\n", "\r\n"));
+        assertFalse(text, text.contains("\r\r"));
+        assertEquals("// " + repeat("word ", 14) + "word\r\n// " + repeat("word ", 5) + "more\r\n",
+                text.substring(before.length(), text.length() - after.length()));
+    }
+
+    @Test
+    public void testCrlfCheckDiffKeepsLineEndings() throws IOException {
+        String comment = "// " + repeat("word ", 20) + "\r\n";
+        Path file = source("crlf.java", "int a;\r\n", comment, "int b;\r\n");
+
+        assertEquals(1, run("--check", file.toString()));
+        String diff = _out.toString("UTF-8");
+        assertTrue(diff, diff.contains("\n-" + comment));
+        assertTrue(diff, diff.contains("\n+// " + repeat("word ", 14) + "word\r\n"));
+        assertFalse(diff, diff.contains("int a;"));
+    }
+
+    @Test
+    public void testFailureDoesNotStopOtherFiles() throws IOException {
+        String comment = "// " + repeat("word ", 20) + "\n";
+        Path good = source("good.c", "", comment, "");
+        Path missing = _tmp.getRoot().toPath().resolve("missing.c");
+
+        assertEquals(2, run(missing.toString(), good.toString()));
+        assertNotEquals(comment, new String(Files.readAllBytes(good), UTF_8));
+        String err = _err.toString("UTF-8");
+        assertTrue(err, err.startsWith(missing + ": "));
+        assertFalse(err, err.contains("\tat "));
+    }
+}